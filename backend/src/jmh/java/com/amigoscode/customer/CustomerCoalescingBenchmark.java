@@ -0,0 +1,143 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.main;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Many threads look customers up by id, with ids drawn from a Zipf distribution so that a few customers take
+ * most of the lookups, either straight from the JDBC DAO or through CoalescingCustomerDAO. Reports lookup
+ * latency, and prints how many queries reached the database per lookup at the end of the trial.
+ * Takes the same jmh.jdbc.* properties as CustomerDAOBenchmark.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(64)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CustomerCoalescingBenchmark {
+
+    private static final int TABLE_SIZE = 10_000;
+
+    @Param({"jdbc", "coalescing"})
+    public String dao;
+
+    // 0 is uniform, around 1 is typical of popularity, higher concentrates lookups on fewer customers
+    @Param({"0", "1.1"})
+    public double zipfExponent;
+
+    private PostgreSQLContainer<?> postgres;
+    private ConfigurableApplicationContext context;
+    private CustomerDAO customerDAO;
+    private long[] ids;
+    // cumulative[i] is the probability of drawing one of the i + 1 most popular customers
+    private double[] cumulative;
+    private final LongAdder lookups = new LongAdder();
+    private double queriesBefore;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String url = System.getProperty("jmh.jdbc.url");
+        String username = System.getProperty("jmh.jdbc.username", "amigoscode");
+        String password = System.getProperty("jmh.jdbc.password", "password");
+        if (url == null) {
+            postgres = new PostgreSQLContainer<>("postgres:latest")
+                    .withDatabaseName("amigoscode-benchmark")
+                    .withUsername(username)
+                    .withPassword(password);
+            postgres.start();
+            url = postgres.getJdbcUrl();
+        }
+        context = new SpringApplicationBuilder(main.class).run(
+                "--spring.main.web-application-type=none",
+                "--spring.datasource.url=" + url,
+                "--spring.datasource.username=" + username,
+                "--spring.datasource.password=" + password,
+                "--spring.jpa.show-sql=false",
+                // every thread would otherwise queue for the same few permits, hiding what coalescing saves
+                "--customer.admission.enabled=false",
+                "--logging.level.root=warn");
+        customerDAO = context.getBean(dao, CustomerDAO.class);
+
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.execute("TRUNCATE customer RESTART IDENTITY");
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 1; i <= TABLE_SIZE; i++) {
+            customers.add(new Customer("customer " + i, "customer-" + i + "@benchmark.com", 18 + i % 80));
+        }
+        customerDAO.insertCustomers(customers);
+        // otherwise autovacuum tends to pick the freshly loaded table up during the first trial
+        jdbcTemplate.execute("VACUUM ANALYZE customer");
+        ids = jdbcTemplate.queryForList("SELECT id FROM customer ORDER BY id", Long.class).stream()
+                .mapToLong(Long::longValue)
+                .toArray();
+
+        cumulative = new double[TABLE_SIZE];
+        double total = 0;
+        for (int rank = 1; rank <= TABLE_SIZE; rank++) {
+            total += 1 / Math.pow(rank, zipfExponent);
+            cumulative[rank - 1] = total;
+        }
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            cumulative[i] /= total;
+        }
+        queriesBefore = queries();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        double queries = queries() - queriesBefore;
+        System.out.printf("%n%s, zipf %s: %d lookups, %.0f queries (%.3f per lookup)%n",
+                dao, zipfExponent, lookups.sum(), queries, queries / Math.max(lookups.sum(), 1));
+        context.close();
+        if (postgres != null) {
+            postgres.stop();
+        }
+    }
+
+    @Benchmark
+    public Optional<Customer> selectCustomerById() {
+        lookups.increment();
+        return customerDAO.selectCustomerById(ids[randomRank()]);
+    }
+
+    private int randomRank() {
+        int rank = Arrays.binarySearch(cumulative, ThreadLocalRandom.current().nextDouble());
+        return rank >= 0 ? rank : Math.min(-rank - 1, TABLE_SIZE - 1);
+    }
+
+    // lookups that reached the JDBC DAO, as counted by CustomerMetricsAspect
+    private double queries() {
+        var timer = context.getBean(MeterRegistry.class).find("customer.dao.calls")
+                .tags("implementation", "jdbc", "method", "selectCustomerById", "outcome", "success")
+                .timer();
+        return timer == null ? 0 : timer.count();
+    }
+}
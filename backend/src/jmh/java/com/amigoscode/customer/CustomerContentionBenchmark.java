@@ -0,0 +1,140 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.main;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent writers increment the age of a few hot customers by reading the row and writing it back, either
+ * blindly or only if it is still at the version that was read (retrying on conflict). An operation is one
+ * acknowledged increment; increments the table does not show at the end of the trial are printed as lost updates.
+ * Takes the same jmh.jdbc.* properties as CustomerDAOBenchmark.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CustomerContentionBenchmark {
+
+    @Param({"jdbc", "jpa", "list"})
+    public String dao;
+
+    @Param({"blind", "optimistic"})
+    public String mode;
+
+    @Param({"1", "16"})
+    public int hotRows;
+
+    private PostgreSQLContainer<?> postgres;
+    private ConfigurableApplicationContext context;
+    private CustomerDAO customerDAO;
+    private boolean optimistic;
+    private long[] ids;
+    private final LongAdder acknowledged = new LongAdder();
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Outcomes {
+        // optimistic writes that found the row at a newer version and were retried
+        public long conflicts;
+        // blind writes of a value another writer had already written
+        public long unchanged;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String url = System.getProperty("jmh.jdbc.url");
+        String username = System.getProperty("jmh.jdbc.username", "amigoscode");
+        String password = System.getProperty("jmh.jdbc.password", "password");
+        if (url == null) {
+            postgres = new PostgreSQLContainer<>("postgres:latest")
+                    .withDatabaseName("amigoscode-benchmark")
+                    .withUsername(username)
+                    .withPassword(password);
+            postgres.start();
+            url = postgres.getJdbcUrl();
+        }
+        context = new SpringApplicationBuilder(main.class).run(
+                "--spring.main.web-application-type=none",
+                "--spring.datasource.url=" + url,
+                "--spring.datasource.username=" + username,
+                "--spring.datasource.password=" + password,
+                "--spring.jpa.show-sql=false",
+                // measures the DAOs themselves, so the writers are not held back by admission control
+                "--customer.admission.enabled=false",
+                "--logging.level.root=warn");
+        customerDAO = context.getBean(dao, CustomerDAO.class);
+        optimistic = mode.equals("optimistic");
+
+        context.getBean(JdbcTemplate.class).execute("TRUNCATE customer RESTART IDENTITY");
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 1; i <= hotRows; i++) {
+            customers.add(new Customer("customer " + i, "customer-" + i + "@benchmark.com", 0));
+        }
+        ids = customerDAO.insertCustomers(customers).stream()
+                .mapToLong(id -> id.orElseThrow())
+                .toArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        long applied = 0;
+        for (long id : ids) {
+            applied += customerDAO.selectCustomerById(id).orElseThrow().getAge();
+        }
+        long lost = acknowledged.sum() - applied;
+        System.out.printf("%n%s %s, %d hot rows: %d increments acknowledged, %d applied, %d lost (%.1f%%)%n",
+                dao, mode, hotRows, acknowledged.sum(), applied, lost, 100.0 * lost / Math.max(acknowledged.sum(), 1));
+        context.close();
+        if (postgres != null) {
+            postgres.stop();
+        }
+    }
+
+    @Benchmark
+    public void incrementAge(Outcomes outcomes) {
+        long id = ids[ThreadLocalRandom.current().nextInt(hotRows)];
+        while (true) {
+            Customer customer = customerDAO.selectCustomerById(id).orElseThrow();
+            CustomerUpdateResult result = customerDAO.updateCustomerIfChanged(new Customer(id, customer.getName(),
+                    customer.getEmail(), customer.getAge() + 1, optimistic ? customer.getVersion() : null));
+            switch (result) {
+                case UPDATED -> {
+                    acknowledged.increment();
+                    return;
+                }
+                case VERSION_CONFLICT -> outcomes.conflicts++;
+                case UNCHANGED, NOT_FOUND -> {
+                    outcomes.unchanged++;
+                    return;
+                }
+            }
+        }
+    }
+}
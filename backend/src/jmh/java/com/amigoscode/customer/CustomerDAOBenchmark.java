@@ -0,0 +1,146 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.main;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the CustomerDAO implementations against the same Postgres database.
+ * Pass -jvmArgsAppend -Djmh.jdbc.url=... (plus jmh.jdbc.username / jmh.jdbc.password) to use an
+ * existing database, otherwise a Testcontainers Postgres is started per fork.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CustomerDAOBenchmark {
+
+    private static final int INSERT_BATCH_SIZE = 500;
+
+    @Param({"jdbc", "jpa", "list"})
+    public String dao;
+
+    @Param({"1000", "10000", "100000"})
+    public int tableSize;
+
+    private PostgreSQLContainer<?> postgres;
+    private ConfigurableApplicationContext context;
+    private CustomerDAO customerDAO;
+    private final AtomicLong inserted = new AtomicLong();
+    private long[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String url = System.getProperty("jmh.jdbc.url");
+        String username = System.getProperty("jmh.jdbc.username", "amigoscode");
+        String password = System.getProperty("jmh.jdbc.password", "password");
+        if (url == null) {
+            postgres = new PostgreSQLContainer<>("postgres:latest")
+                    .withDatabaseName("amigoscode-benchmark")
+                    .withUsername(username)
+                    .withPassword(password);
+            postgres.start();
+            url = postgres.getJdbcUrl();
+        }
+        context = new SpringApplicationBuilder(main.class).run(
+                "--spring.main.web-application-type=none",
+                "--spring.datasource.url=" + url,
+                "--spring.datasource.username=" + username,
+                "--spring.datasource.password=" + password,
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=warn");
+        customerDAO = context.getBean(dao, CustomerDAO.class);
+
+        context.getBean(JdbcTemplate.class).execute("TRUNCATE customer RESTART IDENTITY");
+        // ids are not contiguous once the sequence hands out blocks; row i was inserted i-th, so ids[i - 1] is its id.
+        // They come from the DAO rather than the table, which the in-memory DAO never writes to
+        ids = new long[tableSize];
+        List<Customer> batch = new ArrayList<>();
+        for (int i = 1; i <= tableSize; i++) {
+            batch.add(new Customer("customer " + i, emailOf(i), 18 + i % 80));
+            if (batch.size() == 10_000 || i == tableSize) {
+                List<Optional<Long>> inserted = customerDAO.insertCustomers(batch);
+                for (int j = 0; j < inserted.size(); j++) {
+                    ids[i - inserted.size() + j] = inserted.get(j).orElseThrow();
+                }
+                batch = new ArrayList<>();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        if (postgres != null) {
+            postgres.stop();
+        }
+    }
+
+    @Benchmark
+    public Optional<Customer> selectCustomerById() {
+        return customerDAO.selectCustomerById(ids[randomRow() - 1]);
+    }
+
+    @Benchmark
+    public Optional<Customer> selectCustomerByEmail() {
+        return customerDAO.selectCustomerByEmail(emailOf(randomRow()));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Customer> selectAllCustomers() {
+        return customerDAO.selectAllCustomers();
+    }
+
+    @Benchmark
+    public void insertCustomer() {
+        customerDAO.insertCustomer(new Customer("inserted", "inserted-" + inserted.incrementAndGet() + "@benchmark.com", 30));
+    }
+
+    @Benchmark
+    public List<Optional<Long>> insertCustomers() {
+        List<Customer> batch = new ArrayList<>(INSERT_BATCH_SIZE);
+        for (int i = 0; i < INSERT_BATCH_SIZE; i++) {
+            batch.add(new Customer("inserted", "inserted-" + inserted.incrementAndGet() + "@benchmark.com", 30));
+        }
+        return customerDAO.insertCustomers(batch);
+    }
+
+    @Benchmark
+    public void updateCustomer() {
+        int row = randomRow();
+        customerDAO.updateCustomer(new Customer(ids[row - 1], "updated " + row, emailOf(row), ThreadLocalRandom.current().nextInt(18, 99)));
+    }
+
+    private int randomRow() {
+        return ThreadLocalRandom.current().nextInt(1, tableSize + 1);
+    }
+
+    private static String emailOf(long i) {
+        return "customer-" + i + "@benchmark.com";
+    }
+}
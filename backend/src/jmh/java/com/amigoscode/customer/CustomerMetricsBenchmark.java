@@ -0,0 +1,77 @@
+package com.amigoscode.customer;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of CustomerMetricsAspect on an in-memory DAO call, with histograms published the same way as
+ * in application.yml. The difference between the two scores is the per-call recording overhead, including the
+ * proxy dispatch that Spring already pays for every @Repository bean.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class CustomerMetricsBenchmark {
+
+    private static final int CUSTOMERS = 1000;
+
+    private CustomerDAO plain;
+    private CustomerDAO timed;
+
+    @Setup
+    public void setUp() {
+        PrometheusMeterRegistry meterRegistry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        meterRegistry.config().meterFilter(new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                return DistributionStatisticConfig.builder().percentilesHistogram(true).build().merge(config);
+            }
+        });
+
+        CustomerListDataAccessService customerDAO = new CustomerListDataAccessService();
+        for (int i = 0; i < CUSTOMERS; i++) {
+            customerDAO.insertCustomer(new Customer("customer " + i, "customer-" + i + "@benchmark.com", 30));
+        }
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(customerDAO);
+        proxyFactory.addAspect(new CustomerMetricsAspect(meterRegistry));
+        plain = customerDAO;
+        timed = proxyFactory.getProxy();
+    }
+
+    @Benchmark
+    public Optional<Customer> selectCustomerById() {
+        return plain.selectCustomerById(randomId());
+    }
+
+    @Benchmark
+    public Optional<Customer> selectCustomerByIdTimed() {
+        return timed.selectCustomerById(randomId());
+    }
+
+    private static long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, CUSTOMERS + 1);
+    }
+}
@@ -0,0 +1,151 @@
+package com.amigoscode.customer;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Bounds concurrent calls with a limit that follows the latency the calls observe, after TCP Vegas: the ratio of
+// the best latency seen to the current one estimates how many calls are queued behind others in the database
+// rather than being worked on. The limit grows while that queue is short and shrinks once it builds up.
+// A ReentrantLock rather than synchronized, so that virtual threads waiting for a permit do not pin their carrier.
+public class AdaptiveConcurrencyLimiter {
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition available = lock.newCondition();
+
+    private double limit;
+
+    private int inFlight;
+
+    private long rttNoLoadNanos;
+
+    private long samples;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException(
+                    "Expected 1 <= min-limit <= initial-limit <= max-limit but got %d, %d, %d"
+                            .formatted(minLimit, initialLimit, maxLimit));
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    // false once timeoutNanos pass without a call finishing to make room
+    public boolean tryAcquire(long timeoutNanos) throws InterruptedException {
+        lock.lock();
+        try {
+            long remaining = timeoutNanos;
+            while (inFlight >= (int) limit) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = available.awaitNanos(remaining);
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // a call that completed in rttNanos
+    public void release(long rttNanos) {
+        lock.lock();
+        try {
+            sample(rttNanos);
+            inFlight--;
+            signalAvailable();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // a call that failed for lack of a resource, such as a connection pool timeout
+    public void releaseDropped() {
+        lock.lock();
+        try {
+            limit = Math.max(minLimit, limit - log10(limit));
+            inFlight--;
+            signalAvailable();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // a call whose latency says nothing about load, such as a long stream or a failure unrelated to capacity
+    public void releaseIgnored() {
+        lock.lock();
+        try {
+            inFlight--;
+            signalAvailable();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int limit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // the best latency seen lately, against which queueing is judged
+    public long rttNoLoadNanos() {
+        lock.lock();
+        try {
+            return rttNoLoadNanos;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void sample(long rttNanos) {
+        // forget the best latency now and then, so that a lasting change in the database's baseline is picked up
+        if (++samples % (30L * maxLimit) == 0 || rttNoLoadNanos == 0 || rttNanos < rttNoLoadNanos) {
+            rttNoLoadNanos = Math.max(rttNanos, 1);
+            return;
+        }
+        // with most of the limit unused, latency is not being caused by the limit
+        if (inFlight * 2 < limit) {
+            return;
+        }
+        double log = log10(limit);
+        double queued = Math.ceil(limit * (1 - (double) rttNoLoadNanos / rttNanos));
+        if (queued <= log) {
+            limit += 6 * log;
+        } else if (queued < 3 * log) {
+            limit += log;
+        } else if (queued > 6 * log) {
+            limit -= log;
+        }
+        limit = Math.max(minLimit, Math.min(maxLimit, limit));
+    }
+
+    private void signalAvailable() {
+        for (int free = (int) limit - inFlight; free > 0; free--) {
+            available.signal();
+        }
+    }
+
+    private static double log10(double limit) {
+        return Math.max(1, Math.log10(limit));
+    }
+}
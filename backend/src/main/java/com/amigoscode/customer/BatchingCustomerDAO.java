@@ -0,0 +1,201 @@
+package com.amigoscode.customer;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// Registrations arriving together are written as one multi-row INSERT, one statement and one commit for the lot,
+// instead of a transaction each. The first registration of a batch waits up to max-delay for others to join,
+// or until max-size have, then inserts them all on its own thread while the rest wait for their outcome.
+// Every caller returns only once the batch has committed, as it would have after inserting alone.
+// Enabled is checked at run time rather than with @ConditionalOnProperty, since the DAOs above wire this by name.
+@Repository("batching")
+public class BatchingCustomerDAO implements CustomerDAO {
+
+    private final CustomerDAO delegate;
+
+    private final boolean enabled;
+
+    private final long maxDelayNanos;
+
+    private final int maxSize;
+
+    private final DistributionSummary batchSizes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition full = lock.newCondition();
+
+    private List<PendingInsert> open;
+
+    // customers live on the shards when customer.sharding.urls is set, see ShardedCustomerDAOConfig
+    public BatchingCustomerDAO(@Qualifier("jdbc") CustomerDAO jdbc,
+                               Optional<ShardedCustomerDAO> sharded,
+                               MeterRegistry meterRegistry,
+                               @Value("${customer.insert-batching.enabled}") boolean enabled,
+                               @Value("${customer.insert-batching.max-delay}") Duration maxDelay,
+                               @Value("${customer.insert-batching.max-size}") int maxSize) {
+        this.delegate = sharded.<CustomerDAO>map(dao -> dao).orElse(jdbc);
+        this.enabled = enabled;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.maxSize = maxSize;
+        this.batchSizes = DistributionSummary.builder("customer.insert.batch.size")
+                .description("Registrations written by one batched INSERT")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return delegate.selectAllCustomers();
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfter(Long afterId, int limit) {
+        return delegate.selectCustomersAfter(afterId, limit);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        return delegate.selectCustomerById(id);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerByEmail(String email) {
+        return delegate.selectCustomerByEmail(email);
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        return delegate.selectCustomersByIds(ids);
+    }
+
+    @Override
+    public Optional<Long> selectCustomerVersion(Long id) {
+        return delegate.selectCustomerVersion(id);
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        delegate.insertCustomer(customer);
+    }
+
+    @Override
+    public Optional<Long> insertCustomerIfAbsent(Customer customer) {
+        // a transaction's insert must commit or roll back with it, not with strangers' batch
+        if (!enabled || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return delegate.insertCustomerIfAbsent(customer);
+        }
+        PendingInsert insert = new PendingInsert(customer, new CompletableFuture<>());
+        List<PendingInsert> batch = join(insert);
+        if (batch != null) {
+            flush(batch);
+        }
+        try {
+            return insert.id().join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    @Override
+    public List<Optional<Long>> insertCustomers(List<Customer> customers) {
+        return delegate.insertCustomers(customers);
+    }
+
+    @Override
+    public void updateCustomer(Customer customer) {
+        delegate.updateCustomer(customer);
+    }
+
+    @Override
+    public CustomerUpdateResult updateCustomerIfChanged(Customer customer) {
+        return delegate.updateCustomerIfChanged(customer);
+    }
+
+    @Override
+    public boolean deleteCustomerById(Long id) {
+        return delegate.deleteCustomerById(id);
+    }
+
+    @Override
+    public void forEachCustomer(Consumer<Customer> action) {
+        delegate.forEachCustomer(action);
+    }
+
+    // Adds the insert to the open batch. The insert that opened the batch gets it back to flush once it is
+    // full or max-delay has passed, every other insert gets null and waits for the batch to be flushed.
+    private List<PendingInsert> join(PendingInsert insert) {
+        lock.lock();
+        try {
+            boolean first = open == null;
+            if (first) {
+                open = new ArrayList<>(maxSize);
+            }
+            List<PendingInsert> batch = open;
+            batch.add(insert);
+            if (batch.size() >= maxSize) {
+                open = null;
+                full.signalAll();
+            }
+            if (!first) {
+                return null;
+            }
+            long remaining = maxDelayNanos;
+            while (open == batch && remaining > 0) {
+                try {
+                    remaining = full.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            if (open == batch) {
+                open = null;
+            }
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flush(List<PendingInsert> batch) {
+        batchSizes.record(batch.size());
+        try {
+            List<Optional<Long>> ids = delegate.insertCustomers(batch.stream().map(PendingInsert::customer).toList());
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).id().complete(ids.get(i));
+            }
+        } catch (DataIntegrityViolationException e) {
+            // one invalid row fails the whole statement, so each is retried alone to fail only its own caller
+            batch.forEach(this::insertAlone);
+        } catch (RuntimeException | Error e) {
+            batch.forEach(insert -> insert.id().completeExceptionally(e));
+        }
+    }
+
+    private void insertAlone(PendingInsert insert) {
+        try {
+            insert.id().complete(delegate.insertCustomerIfAbsent(insert.customer()));
+        } catch (RuntimeException e) {
+            insert.id().completeExceptionally(e);
+        }
+    }
+
+    private record PendingInsert(Customer customer, CompletableFuture<Optional<Long>> id) {
+    }
+}
@@ -0,0 +1,224 @@
+package com.amigoscode.customer;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+@Repository("cached")
+public class CachingCustomerDAO implements CustomerDAO {
+
+    private final CustomerDAO delegate;
+
+    // Async so that a miss is loaded by the calling thread outside the cache's map lock, which would
+    // otherwise pin a virtual thread for the whole query. Concurrent misses for the same id wait on the future.
+    private final AsyncCache<Long, Customer> customersById;
+
+    private final Cache<String, Long> idsByEmail;
+
+    public CachingCustomerDAO(@Qualifier("jdbc") CustomerDAO delegate,
+                              @Value("${customer.cache.maximum-size}") long maximumSize,
+                              @Value("${customer.cache.ttl}") Duration ttl) {
+        this.delegate = delegate;
+        this.customersById = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+        this.idsByEmail = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return delegate.selectAllCustomers();
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfter(Long afterId, int limit) {
+        return delegate.selectCustomersAfter(afterId, limit);
+    }
+
+    // Loads join a read-write scope and so read the primary: a replica may not yet have replayed the change
+    // whose notification just invalidated the entry, and its old row would then be cached for the whole TTL.
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Optional<Customer> selectCustomerById(Long id) {
+        CompletableFuture<Customer> load = new CompletableFuture<>();
+        CompletableFuture<Customer> customer = customersById.get(id, (key, executor) -> load);
+        if (customer == load) {
+            try {
+                load.complete(delegate.selectCustomerById(id).orElse(null));
+            } catch (RuntimeException e) {
+                load.completeExceptionally(e);
+                throw e;
+            }
+        }
+        try {
+            return Optional.ofNullable(customer.join()).map(CachingCustomerDAO::copyOf);
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Optional<Customer> selectCustomerByEmail(String email) {
+        Long id = idsByEmail.getIfPresent(email);
+        if (id != null) {
+            CompletableFuture<Customer> cached = customersById.getIfPresent(id);
+            Customer customer = cached == null ? null : cached.getNow(null);
+            // the email index can outlive an email change, so only trust it when the row still matches
+            if (customer != null && customer.getEmail().equals(email)) {
+                return Optional.of(copyOf(customer));
+            }
+        }
+        // The row read here is only used for its id, and the customer is then cached through selectCustomerById.
+        // Putting this row straight into the cache could undo an invalidation that arrived while it was read.
+        Optional<Customer> customer = delegate.selectCustomerByEmail(email);
+        if (customer.isEmpty()) {
+            return customer;
+        }
+        idsByEmail.put(email, customer.get().getId());
+        return selectCustomerById(customer.get().getId())
+                .filter(c -> c.getEmail().equals(email))
+                .or(() -> customer);
+    }
+
+    // Cached customers are served as they are and the rest are loaded with one query. Like a single load, each
+    // miss is registered in the cache before the query, so an invalidation that arrives meanwhile discards it.
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        List<Customer> customers = new ArrayList<>(ids.size());
+        Map<Long, CompletableFuture<Customer>> loads = new HashMap<>();
+        List<Long> misses = new ArrayList<>();
+        for (Long id : ids) {
+            CompletableFuture<Customer> load = new CompletableFuture<>();
+            CompletableFuture<Customer> cached = customersById.asMap().putIfAbsent(id, load);
+            if (cached == null) {
+                loads.put(id, load);
+                misses.add(id);
+            } else if (cached.isDone() && !cached.isCompletedExceptionally() && cached.join() != null) {
+                customers.add(copyOf(cached.join()));
+            } else {
+                // being loaded by another caller, who may still fail, so it is read again here
+                misses.add(id);
+            }
+        }
+        if (misses.isEmpty()) {
+            return customers;
+        }
+        List<Customer> loaded;
+        try {
+            loaded = delegate.selectCustomersByIds(misses);
+        } catch (RuntimeException e) {
+            loads.values().forEach(load -> load.completeExceptionally(e));
+            throw e;
+        }
+        for (Customer customer : loaded) {
+            CompletableFuture<Customer> load = loads.remove(customer.getId());
+            if (load != null) {
+                load.complete(copyOf(customer));
+            }
+            customers.add(customer);
+        }
+        // completing with null removes the entry, so customers that do not exist are not cached
+        loads.values().forEach(load -> load.complete(null));
+        return customers;
+    }
+
+    // always asks the database, so a conditional GET can confirm that a cached copy is still current
+    @Override
+    public Optional<Long> selectCustomerVersion(Long id) {
+        return delegate.selectCustomerVersion(id);
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        delegate.insertCustomer(customer);
+        idsByEmail.invalidate(customer.getEmail());
+    }
+
+    @Override
+    public Optional<Long> insertCustomerIfAbsent(Customer customer) {
+        Optional<Long> id = delegate.insertCustomerIfAbsent(customer);
+        idsByEmail.invalidate(customer.getEmail());
+        return id;
+    }
+
+    @Override
+    public List<Optional<Long>> insertCustomers(List<Customer> customers) {
+        List<Optional<Long>> ids = delegate.insertCustomers(customers);
+        idsByEmail.invalidateAll(customers.stream().map(Customer::getEmail).toList());
+        return ids;
+    }
+
+    @Override
+    public void updateCustomer(Customer customer) {
+        delegate.updateCustomer(customer);
+        customersById.synchronous().invalidate(customer.getId());
+        idsByEmail.invalidate(customer.getEmail());
+    }
+
+    @Override
+    public CustomerUpdateResult updateCustomerIfChanged(Customer customer) {
+        CustomerUpdateResult result = delegate.updateCustomerIfChanged(customer);
+        customersById.synchronous().invalidate(customer.getId());
+        idsByEmail.invalidate(customer.getEmail());
+        return result;
+    }
+
+    @Override
+    public boolean deleteCustomerById(Long id) {
+        boolean deleted = delegate.deleteCustomerById(id);
+        customersById.synchronous().invalidate(id);
+        return deleted;
+    }
+
+    @Override
+    public void forEachCustomer(Consumer<Customer> action) {
+        delegate.forEachCustomer(action);
+    }
+
+    // for changes made elsewhere, e.g. by another node; the email index is checked against the row, so it can stay
+    public void invalidate(Long id) {
+        customersById.synchronous().invalidate(id);
+    }
+
+    public void invalidateAll() {
+        customersById.synchronous().invalidateAll();
+        idsByEmail.invalidateAll();
+    }
+
+    public CacheStats idCacheStats() {
+        return customersById.synchronous().stats();
+    }
+
+    public CacheStats emailCacheStats() {
+        return idsByEmail.stats();
+    }
+
+    private static Customer copyOf(Customer customer) {
+        return new Customer(customer.getId(), customer.getName(), customer.getEmail(), customer.getAge(), customer.getVersion());
+    }
+}
@@ -0,0 +1,145 @@
+package com.amigoscode.customer;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Concurrent lookups of the same id or email share one query instead of each issuing their own. Nothing is
+// kept once the query returns, so unlike CachingCustomerDAO this never serves a row older than the lookup.
+@Repository("coalescing")
+public class CoalescingCustomerDAO implements CustomerDAO {
+
+    private final CustomerDAO delegate;
+
+    private final ConcurrentMap<Long, CompletableFuture<Optional<Customer>>> lookupsById = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, CompletableFuture<Optional<Customer>>> lookupsByEmail = new ConcurrentHashMap<>();
+
+    public CoalescingCustomerDAO(@Qualifier("batching") CustomerDAO delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return delegate.selectAllCustomers();
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfter(Long afterId, int limit) {
+        return delegate.selectCustomersAfter(afterId, limit);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        return coalesce(lookupsById, id, () -> delegate.selectCustomerById(id));
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerByEmail(String email) {
+        return coalesce(lookupsByEmail, email, () -> delegate.selectCustomerByEmail(email));
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        return delegate.selectCustomersByIds(ids);
+    }
+
+    @Override
+    public Optional<Long> selectCustomerVersion(Long id) {
+        return delegate.selectCustomerVersion(id);
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        delegate.insertCustomer(customer);
+        lookupsByEmail.remove(customer.getEmail());
+    }
+
+    @Override
+    public Optional<Long> insertCustomerIfAbsent(Customer customer) {
+        Optional<Long> id = delegate.insertCustomerIfAbsent(customer);
+        lookupsByEmail.remove(customer.getEmail());
+        return id;
+    }
+
+    @Override
+    public List<Optional<Long>> insertCustomers(List<Customer> customers) {
+        List<Optional<Long>> ids = delegate.insertCustomers(customers);
+        customers.forEach(customer -> lookupsByEmail.remove(customer.getEmail()));
+        return ids;
+    }
+
+    @Override
+    public void updateCustomer(Customer customer) {
+        delegate.updateCustomer(customer);
+        forget(customer.getId());
+    }
+
+    @Override
+    public CustomerUpdateResult updateCustomerIfChanged(Customer customer) {
+        CustomerUpdateResult result = delegate.updateCustomerIfChanged(customer);
+        forget(customer.getId());
+        return result;
+    }
+
+    @Override
+    public boolean deleteCustomerById(Long id) {
+        boolean deleted = delegate.deleteCustomerById(id);
+        forget(id);
+        return deleted;
+    }
+
+    @Override
+    public void forEachCustomer(Consumer<Customer> action) {
+        delegate.forEachCustomer(action);
+    }
+
+    // A lookup still in flight may have read the row before this write, so later lookups must not join it.
+    // The email may have been changed by the write, so every email lookup is let go, not just the new one's.
+    private void forget(Long id) {
+        lookupsById.remove(id);
+        lookupsByEmail.clear();
+    }
+
+    // Each caller gets its own copy, so one that modifies its customer does not change the others'.
+    private static <K> Optional<Customer> coalesce(ConcurrentMap<K, CompletableFuture<Optional<Customer>>> lookups,
+                                                   K key,
+                                                   Supplier<Optional<Customer>> query) {
+        // a transaction may have written the row itself, and only its own query would see that
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return query.get();
+        }
+        CompletableFuture<Optional<Customer>> lookup = new CompletableFuture<>();
+        CompletableFuture<Optional<Customer>> inFlight = lookups.putIfAbsent(key, lookup);
+        if (inFlight == null) {
+            inFlight = lookup;
+            try {
+                lookup.complete(query.get());
+            } catch (RuntimeException | Error e) {
+                lookup.completeExceptionally(e);
+                throw e;
+            } finally {
+                lookups.remove(key, lookup);
+            }
+        }
+        try {
+            return inFlight.join().map(CoalescingCustomerDAO::copyOf);
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private static Customer copyOf(Customer customer) {
+        return new Customer(customer.getId(), customer.getName(), customer.getEmail(), customer.getAge(), customer.getVersion());
+    }
+}
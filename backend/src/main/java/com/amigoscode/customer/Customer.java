@@ -1,5 +1,6 @@
 package com.amigoscode.customer;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 
 import java.util.Objects;
@@ -8,7 +9,7 @@ import java.util.Objects;
 @Table(name="customer", uniqueConstraints = {@UniqueConstraint(name="unique_email_constraint",columnNames = "email")})
 public class Customer {
     @Id
-    @SequenceGenerator(name = "customer_id_seq",sequenceName = "customer_id_seq",allocationSize = 1,initialValue = 1)
+    @SequenceGenerator(name = "customer_id_seq",sequenceName = "customer_id_seq",allocationSize = 50,initialValue = 1)
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "customer_id_seq")
     private Long id;
 
@@ -21,6 +22,12 @@ public class Customer {
     @Column(nullable = false)
     private Integer age;
 
+    // 0 on insert and incremented by every UPDATE; a customer carrying a version is only updated if it still matches
+    @JsonIgnore
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     public Customer() {
     }
 
@@ -31,6 +38,11 @@ public class Customer {
         this.age = age;
     }
 
+    public Customer(Long id, String name, String email, Integer age, Long version) {
+        this(id, name, email, age);
+        this.version = version;
+    }
+
     public Customer( String name, String email, Integer age) {
         this.name = name;
         this.email = email;
@@ -69,6 +81,15 @@ public class Customer {
         this.age = age;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    // the version is not part of a customer's value, so a row read back equals the customer that was written
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -89,6 +110,7 @@ public class Customer {
                 ", name='" + name + '\'' +
                 ", email='" + email + '\'' +
                 ", age=" + age +
+                ", version=" + version +
                 '}';
     }
 
@@ -0,0 +1,166 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+// Admission control in front of the JDBC customer DAO, or the sharded one when customers are sharded, whose calls
+// each take at most one connection from every shard's pool at a time. Budgets are separate so a burst of reads
+// cannot take every connection from writes or the other way round. Streamed exports hold their connection for as
+// long as the client takes to read, so they get a small fixed budget of their own rather than a share of the reads.
+// Calls beyond a budget's limit wait at most max-wait for a permit and are then turned away with a 503,
+// instead of queueing without bound for a pooled connection.
+// Outermost, so a call waiting here has not yet joined a transaction.
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(prefix = "customer.admission", name = "enabled")
+public class CustomerAdmissionAspect {
+
+    private final Budget reads;
+
+    private final Budget writes;
+
+    private final Budget exports;
+
+    private final long maxWaitNanos;
+
+    private final Duration retryAfter;
+
+    public CustomerAdmissionAspect(MeterRegistry meterRegistry,
+                                   @Value("${customer.admission.max-wait}") Duration maxWait,
+                                   @Value("${customer.admission.retry-after}") Duration retryAfter,
+                                   @Value("${customer.admission.reads.initial-limit}") int readsInitialLimit,
+                                   @Value("${customer.admission.reads.min-limit}") int readsMinLimit,
+                                   @Value("${customer.admission.reads.max-limit}") int readsMaxLimit,
+                                   @Value("${customer.admission.writes.initial-limit}") int writesInitialLimit,
+                                   @Value("${customer.admission.writes.min-limit}") int writesMinLimit,
+                                   @Value("${customer.admission.writes.max-limit}") int writesMaxLimit,
+                                   @Value("${customer.admission.exports.limit}") int exportsLimit) {
+        this.reads = new Budget("reads",
+                new AdaptiveConcurrencyLimiter(readsInitialLimit, readsMinLimit, readsMaxLimit), meterRegistry);
+        this.writes = new Budget("writes",
+                new AdaptiveConcurrencyLimiter(writesInitialLimit, writesMinLimit, writesMaxLimit), meterRegistry);
+        this.exports = new Budget("exports",
+                new AdaptiveConcurrencyLimiter(exportsLimit, exportsLimit, exportsLimit), meterRegistry);
+        this.maxWaitNanos = maxWait.toNanos();
+        this.retryAfter = retryAfter;
+    }
+
+    // the DAOs that ShardedCustomerDAO creates per shard are not beans, so its calls are admitted only once
+    @Pointcut("execution(public * com.amigoscode.customer.CustomerJDBCDataAccessService.*(..))"
+            + " || (within(com.amigoscode.customer.ShardedCustomerDAO) && execution(* com.amigoscode.customer.CustomerDAO.*(..)))")
+    void customerDao() {
+    }
+
+    @Pointcut("execution(* select*(..))")
+    void read() {
+    }
+
+    @Pointcut("execution(* forEach*(..))")
+    void export() {
+    }
+
+    @Around("customerDao() && read()")
+    public Object admitRead(ProceedingJoinPoint joinPoint) throws Throwable {
+        return admit(joinPoint, reads);
+    }
+
+    @Around("customerDao() && export()")
+    public Object admitExport(ProceedingJoinPoint joinPoint) throws Throwable {
+        return admit(joinPoint, exports);
+    }
+
+    @Around("customerDao() && !read() && !export()")
+    public Object admitWrite(ProceedingJoinPoint joinPoint) throws Throwable {
+        return admit(joinPoint, writes);
+    }
+
+    private Object admit(ProceedingJoinPoint joinPoint, Budget budget) throws Throwable {
+        long waitStart = System.nanoTime();
+        boolean admitted;
+        try {
+            admitted = budget.limiter.tryAcquire(maxWaitNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            admitted = false;
+        }
+        long start = System.nanoTime();
+        if (!admitted) {
+            budget.shed.increment();
+            throw new ServiceUnavailableException(
+                    "Too many concurrent customer %s, try again later".formatted(budget.name), retryAfter);
+        }
+        budget.wait.record(start - waitStart, TimeUnit.NANOSECONDS);
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (CannotGetJdbcConnectionException | QueryTimeoutException e) {
+            budget.limiter.releaseDropped();
+            throw e;
+        } catch (Throwable e) {
+            budget.limiter.releaseIgnored();
+            throw e;
+        }
+        // a streamed export holds its permit for as long as the client reads, which says nothing about the database
+        if (budget == exports) {
+            budget.limiter.releaseIgnored();
+        } else {
+            budget.limiter.release(System.nanoTime() - start);
+        }
+        return result;
+    }
+
+    private static final class Budget {
+
+        private final String name;
+
+        private final AdaptiveConcurrencyLimiter limiter;
+
+        private final Timer wait;
+
+        private final Counter shed;
+
+        private Budget(String name, AdaptiveConcurrencyLimiter limiter, MeterRegistry meterRegistry) {
+            this.name = name;
+            this.limiter = limiter;
+            Gauge.builder("customer.admission.limit", limiter, AdaptiveConcurrencyLimiter::limit)
+                    .description("Concurrent customer DAO calls currently allowed")
+                    .tag("budget", name)
+                    .register(meterRegistry);
+            Gauge.builder("customer.admission.in-flight", limiter, AdaptiveConcurrencyLimiter::inFlight)
+                    .description("Customer DAO calls currently admitted")
+                    .tag("budget", name)
+                    .register(meterRegistry);
+            Gauge.builder("customer.admission.rtt-no-load", limiter, l -> l.rttNoLoadNanos() / 1e9)
+                    .description("Best recent customer DAO call latency, the baseline for the limit")
+                    .baseUnit("seconds")
+                    .tag("budget", name)
+                    .register(meterRegistry);
+            this.wait = Timer.builder("customer.admission.wait")
+                    .description("Time admitted customer DAO calls waited for a permit")
+                    .tag("budget", name)
+                    .register(meterRegistry);
+            this.shed = Counter.builder("customer.admission.shed")
+                    .description("Customer DAO calls turned away after waiting max-wait for a permit")
+                    .tag("budget", name)
+                    .register(meterRegistry);
+        }
+    }
+}
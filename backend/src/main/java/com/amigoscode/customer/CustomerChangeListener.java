@@ -0,0 +1,127 @@
+package com.amigoscode.customer;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Properties;
+
+// Keeps CachingCustomerDAO coherent with writes made by other nodes, which the V5 trigger announces on CHANNEL.
+// Holds its own connection rather than a pooled one, since LISTEN only lasts as long as the session.
+@Component
+public class CustomerChangeListener implements SmartLifecycle {
+
+    static final String CHANNEL = "customer_changes";
+
+    static final String APPLICATION_NAME = "customer-change-listener";
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerChangeListener.class);
+
+    // also how often an idle connection is checked, and how long stopping can take
+    private static final int POLL_TIMEOUT_MILLIS = 1000;
+
+    private final DataSourceProperties dataSourceProperties;
+
+    private final CachingCustomerDAO cachingCustomerDAO;
+
+    private final Duration reconnectDelay;
+
+    private volatile boolean running;
+
+    private Thread thread;
+
+    public CustomerChangeListener(DataSourceProperties dataSourceProperties,
+                                  CachingCustomerDAO cachingCustomerDAO,
+                                  @Value("${customer.cache.notifications.reconnect-delay}") Duration reconnectDelay) {
+        this.dataSourceProperties = dataSourceProperties;
+        this.cachingCustomerDAO = cachingCustomerDAO;
+        this.reconnectDelay = reconnectDelay;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        thread = Thread.ofPlatform().name(APPLICATION_NAME).daemon().start(this::listen);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = connect()) {
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                // notifications sent while this node was not listening are lost, so nothing cached before now can be trusted
+                cachingCustomerDAO.invalidateAll();
+                log.debug("Listening for customer changes");
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MILLIS);
+                    if (notifications == null || notifications.length == 0) {
+                        if (!connection.isValid(POLL_TIMEOUT_MILLIS / 1000)) {
+                            throw new SQLException("Customer change listener connection is no longer valid");
+                        }
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        invalidate(notification.getParameter());
+                    }
+                }
+            } catch (SQLException e) {
+                if (running) {
+                    log.warn("Customer change listener disconnected, reconnecting in {}", reconnectDelay, e);
+                    sleep(reconnectDelay);
+                }
+            }
+        }
+    }
+
+    private void invalidate(String payload) {
+        if (payload.equals("*")) {
+            cachingCustomerDAO.invalidateAll();
+        } else {
+            cachingCustomerDAO.invalidate(Long.valueOf(payload));
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        Properties properties = new Properties();
+        properties.setProperty("user", dataSourceProperties.determineUsername());
+        properties.setProperty("password", dataSourceProperties.determinePassword());
+        properties.setProperty("ApplicationName", APPLICATION_NAME);
+        return DriverManager.getConnection(dataSourceProperties.determineUrl(), properties);
+    }
+
+    private void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            // stop() interrupts to end the wait early
+        }
+    }
+}
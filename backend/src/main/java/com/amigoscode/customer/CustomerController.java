@@ -1,27 +1,97 @@
 package com.amigoscode.customer;
 
+import com.amigoscode.exception.PreconditionFailedException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ETag;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.List;
 
 @RestController
 @RequestMapping("api/v1/customers")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class CustomerController {
 
     private final CustomerService customerService;
 
-    public CustomerController(CustomerService customerService) {
+    private final CustomerImportService customerImportService;
+
+    private final ObjectMapper objectMapper;
+
+    public CustomerController(CustomerService customerService, CustomerImportService customerImportService, ObjectMapper objectMapper) {
         this.customerService = customerService;
+        this.customerImportService = customerImportService;
+        this.objectMapper = objectMapper;
     }
 
+    // returning null after checkNotModified leaves the 304 without a body, so nothing is serialized
     @GetMapping()
-    public List<Customer> getCustomers() {
-        return customerService.getAllCustomers();
+    public List<Customer> getCustomers(WebRequest request) {
+        List<Customer> customers = customerService.getAllCustomers();
+        return request.checkNotModified(etagOf(customers)) ? null : customers;
+    }
+
+    @GetMapping(params = "limit")
+    public CustomerPage getCustomersPage(@RequestParam(required = false) Long after, @RequestParam int limit, WebRequest request) {
+        CustomerPage page = customerService.getCustomersPage(after, limit);
+        return request.checkNotModified(etagOf(page.customers())) ? null : page;
+    }
+
+    @GetMapping(params = "ids")
+    public CustomerLookupResult getCustomersByIds(@RequestParam List<Long> ids, WebRequest request) {
+        CustomerLookupResult result = customerService.getCustomers(ids);
+        return request.checkNotModified(etagOf(result.customers())) ? null : result;
+    }
+
+    // the same lookup for more ids than fit in a URL
+    @PostMapping("/lookup")
+    public CustomerLookupResult lookupCustomers(@RequestBody List<Long> ids) {
+        return customerService.getCustomers(ids);
+    }
+
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    public StreamingResponseBody exportCustomers() {
+        return outputStream -> {
+            try (SequenceWriter writer = objectMapper.writer()
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                    .withRootValueSeparator("\n")
+                    .writeValues(outputStream)) {
+                customerService.exportCustomers(customer -> {
+                    try {
+                        writer.write(customer);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
     }
 
     @GetMapping("/{id}")
-    public Customer getCustomer(@PathVariable Long id) {
-        return customerService.getCustomer(id);
+    public Customer getCustomer(@PathVariable Long id, ServletWebRequest request) {
+        // revalidation only needs the version, so the row is read and serialized only when it has changed
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                && request.checkNotModified(etagOf(customerService.getCustomerVersion(id)))) {
+            return null;
+        }
+        Customer customer = customerService.getCustomer(id);
+        // the row may have been updated since its version was read, so label the body with its own version
+        request.getResponse().setHeader(HttpHeaders.ETAG, etagOf(customer.getVersion()));
+        return customer;
     }
 
     @DeleteMapping("/{id}")
@@ -30,12 +100,57 @@ public class CustomerController {
     }
 
     @PostMapping
-    public void addCustomer(@RequestBody CustomerRegistrationRequest customerRegistrationRequest) {
-        customerService.addCustomer(customerRegistrationRequest);
+    public Long addCustomer(@RequestBody CustomerRegistrationRequest customerRegistrationRequest) {
+        return customerService.addCustomer(customerRegistrationRequest);
+    }
+
+    @PostMapping("/batch")
+    public List<CustomerRegistrationResult> addCustomers(@RequestBody List<CustomerRegistrationRequest> customerRegistrationRequests) {
+        return customerService.addCustomers(customerRegistrationRequests);
+    }
+
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public CustomerImportResult importCustomers(InputStream csv) {
+        return customerImportService.importCsv(csv);
     }
 
     @PutMapping("/{id}")
-    public void updateCustomer(@RequestBody CustomerRegistrationRequest customerRegistrationRequest, @PathVariable Long id) {
-        customerService.updateCustomer(id,customerRegistrationRequest);
+    public void updateCustomer(@RequestBody CustomerRegistrationRequest customerRegistrationRequest, @PathVariable Long id,
+                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        customerService.updateCustomer(id, customerRegistrationRequest, versionOf(ifMatch));
+    }
+
+    static String etagOf(long version) {
+        return "\"" + version + "\"";
+    }
+
+    // If-Match: * and no header at all update any version; otherwise it must be the strong ETag of a version
+    static Long versionOf(String ifMatch) {
+        if (ifMatch == null) {
+            return null;
+        }
+        List<ETag> etags = ETag.parse(ifMatch);
+        if (etags.stream().anyMatch(ETag::isWildcard)) {
+            return null;
+        }
+        if (etags.size() == 1 && !etags.get(0).weak() && etags.get(0).tag().matches("\\d{1,18}")) {
+            return Long.valueOf(etags.get(0).tag());
+        }
+        throw new PreconditionFailedException("If-Match %s does not name a customer version".formatted(ifMatch));
+    }
+
+    // every change to a customer bumps its version, so the ids and versions identify the whole list
+    static String etagOf(List<Customer> customers) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer entry = ByteBuffer.allocate(2 * Long.BYTES);
+        for (Customer customer : customers) {
+            digest.update(entry.clear().putLong(customer.getId()).putLong(customer.getVersion()).array());
+        }
+        return "\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
     }
 }
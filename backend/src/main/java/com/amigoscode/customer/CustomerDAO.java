@@ -1,15 +1,35 @@
 package com.amigoscode.customer;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface CustomerDAO {
 
     List<Customer> selectAllCustomers();
+    List<Customer> selectCustomersAfter(Long afterId, int limit);
     Optional<Customer> selectCustomerById(Long id);
     Optional<Customer> selectCustomerByEmail(String email);
+    // the customers among ids that exist, in no particular order
+    List<Customer> selectCustomersByIds(Collection<Long> ids);
     void insertCustomer(Customer customer);
+    Optional<Long> insertCustomerIfAbsent(Customer customer);
+    List<Optional<Long>> insertCustomers(List<Customer> customers);
     void updateCustomer(Customer customer);
-    void deleteCustomerById(Long id);
+    CustomerUpdateResult updateCustomerIfChanged(Customer customer);
+    boolean deleteCustomerById(Long id);
+
+    default Optional<Long> selectCustomerVersion(Long id) {
+        return selectCustomerById(id).map(Customer::getVersion);
+    }
+
+    default void forEachCustomer(Consumer<Customer> action) {
+        List<Customer> page = selectCustomersAfter(0L, 1000);
+        while (!page.isEmpty()) {
+            page.forEach(action);
+            page = selectCustomersAfter(page.get(page.size() - 1).getId(), 1000);
+        }
+    }
 
 }
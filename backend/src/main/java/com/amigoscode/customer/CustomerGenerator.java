@@ -0,0 +1,58 @@
+package com.amigoscode.customer;
+
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class CustomerGenerator {
+
+    // partitions have a fixed size so that a seed produces the same customers at any parallelism
+    static final int PARTITION_SIZE = 100_000;
+
+    private final CustomerImportService customerImportService;
+
+    public CustomerGenerator(CustomerImportService customerImportService) {
+        this.customerImportService = customerImportService;
+    }
+
+    // each worker generates its partition on its own Faker and loads it over its own connection with COPY,
+    // so parallelism should not exceed the connection pool size
+    public CustomerImportResult generate(long count, long seed, int parallelism) {
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<Future<CustomerImportResult>> partitions = new ArrayList<>();
+            for (long first = 0; first < count; first += PARTITION_SIZE) {
+                long partitionFirst = first;
+                long partitionEnd = Math.min(first + PARTITION_SIZE, count);
+                long partitionSeed = seed * 0x9E3779B97F4A7C15L + first;
+                partitions.add(executor.submit(() -> customerImportService.importCsv(
+                        new GeneratedCustomerCsvInputStream(partitionSeed, partitionFirst, partitionEnd))));
+            }
+            long imported = 0;
+            long rejected = 0;
+            for (Future<CustomerImportResult> partition : partitions) {
+                CustomerImportResult result = partition.get();
+                imported += result.imported();
+                rejected += result.rejected();
+            }
+            long elapsedNanos = Math.max(System.nanoTime() - start, 1);
+            return new CustomerImportResult(imported, rejected,
+                    (imported + rejected) * TimeUnit.SECONDS.toNanos(1) / elapsedNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Customer generation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Customer generation failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
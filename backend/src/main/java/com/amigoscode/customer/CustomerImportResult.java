@@ -0,0 +1,5 @@
+package com.amigoscode.customer;
+
+public record CustomerImportResult(long imported, long rejected, long rowsPerSecond) {
+
+}
@@ -0,0 +1,69 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.NotImplementedException;
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.sql.Statement;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class CustomerImportService {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final boolean sharded;
+
+    // COPY loads into the main database, which holds no customers when they are sharded (see ShardedCustomerDAOConfig)
+    public CustomerImportService(JdbcTemplate jdbcTemplate, Optional<ShardedCustomerDAO> sharded) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.sharded = sharded.isPresent();
+    }
+
+    public CustomerImportResult importCsv(InputStream csv) {
+        if (sharded) {
+            throw new NotImplementedException("Importing customers is not supported while customer.sharding.urls is set");
+        }
+        var createStagingTable = """
+                CREATE TEMP TABLE customer_import (name TEXT, email TEXT, age TEXT) ON COMMIT DROP
+                """;
+        var copy = """
+                COPY customer_import (name, email, age) FROM STDIN WITH (FORMAT csv, HEADER true)
+                """;
+        var merge = """
+                INSERT INTO customer (name, email, age)
+                SELECT name, email, age::int FROM customer_import
+                -- rows with a missing field or a non-numeric age are rejected, as are taken emails
+                WHERE name <> '' AND email <> '' AND age ~ '^[0-9]{1,9}$'
+                ON CONFLICT ON CONSTRAINT unique_email_constraint DO NOTHING
+                """;
+        long start = System.nanoTime();
+        long[] counts = jdbcTemplate.execute((ConnectionCallback<long[]>) connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(createStagingTable);
+                long copied = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(copy, csv);
+                long imported = statement.executeUpdate(merge);
+                connection.commit();
+                return new long[]{copied, imported};
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                if (autoCommit) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+            }
+        });
+        long elapsedNanos = Math.max(System.nanoTime() - start, 1);
+        return new CustomerImportResult(counts[1], counts[0] - counts[1],
+                counts[0] * TimeUnit.SECONDS.toNanos(1) / elapsedNanos);
+    }
+}
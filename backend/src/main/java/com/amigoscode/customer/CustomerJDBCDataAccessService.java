@@ -1,15 +1,29 @@
 package com.amigoscode.customer;
 
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.SqlOutParameter;
 import org.springframework.stereotype.Repository;
-
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
+// Reads run in a read-only transaction scope without opening a transaction, which is what sends them to a replica
+// when replicas are configured (see ReplicaDataSourceConfig). Writes and version lookups stay on the primary.
 @Repository("jdbc")
 public class CustomerJDBCDataAccessService implements CustomerDAO {
 
+    private static final int EXPORT_FETCH_SIZE = 1000;
+
     private final JdbcTemplate jdbcTemplate;
 
     private final CustomerRowMapper customerRowMapper;
@@ -20,17 +34,31 @@ public class CustomerJDBCDataAccessService implements CustomerDAO {
     }
 
     @Override
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     public List<Customer> selectAllCustomers() {
         var sql = """
-                SELECT id, name, email, age FROM customer
+                SELECT id, name, email, age, version FROM customer
                 """;
         return jdbcTemplate.query(sql, customerRowMapper );
     }
 
     @Override
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public List<Customer> selectCustomersAfter(Long afterId, int limit) {
+        var sql = """
+                SELECT id, name, email, age, version FROM customer
+                WHERE id > ?
+                ORDER BY id
+                LIMIT ?
+                """;
+        return jdbcTemplate.query(sql, customerRowMapper, afterId, limit);
+    }
+
+    @Override
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     public Optional<Customer> selectCustomerById(Long id) {
         var sql = """
-                SELECT id, name, email, age FROM customer
+                SELECT id, name, email, age, version FROM customer
                 WHERE id = ?
                 """;
 
@@ -40,6 +68,7 @@ public class CustomerJDBCDataAccessService implements CustomerDAO {
     }
 
     @Override
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     public Optional<Customer> selectCustomerByEmail(String email) {
 
         var sql = """
@@ -51,32 +80,145 @@ public class CustomerJDBCDataAccessService implements CustomerDAO {
         return res.stream().findFirst();
     }
 
+    @Override
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        // one array parameter, so the statement is the same however many ids there are
+        var sql = """
+                SELECT id, name, email, age, version FROM customer
+                WHERE id = ANY(?)
+                """;
+        return jdbcTemplate.query(sql,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("int8", ids.toArray())),
+                customerRowMapper);
+    }
+
+    @Override
+    public Optional<Long> selectCustomerVersion(Long id) {
+        var sql = """
+                SELECT version FROM customer
+                WHERE id = ?
+                """;
+        return jdbcTemplate.queryForList(sql, Long.class, id).stream().findFirst();
+    }
+
     @Override
     public void insertCustomer(Customer customer) {
         var sql = """
                 INSERT INTO customer (name, email, age)
                 VALUES (?, ?, ?)
                 """;
-        int update = jdbcTemplate.update(sql, customer.getName(), customer.getEmail(), customer.getAge());
-        System.out.println("jdbcTemplate.update: " + update);
+        jdbcTemplate.update(sql, customer.getName(), customer.getEmail(), customer.getAge());
+    }
+
+    @Override
+    public Optional<Long> insertCustomerIfAbsent(Customer customer) {
+        var sql = """
+                INSERT INTO customer (name, email, age)
+                VALUES (?, ?, ?)
+                ON CONFLICT ON CONSTRAINT unique_email_constraint DO NOTHING
+                RETURNING id
+                """;
+        return jdbcTemplate.query(sql, (rs, rowNum) -> rs.getLong("id"),
+                        customer.getName(), customer.getEmail(), customer.getAge())
+                .stream()
+                .findFirst();
+    }
+
+    @Override
+    public List<Optional<Long>> insertCustomers(List<Customer> customers) {
+        var sql = """
+                INSERT INTO customer (name, email, age)
+                SELECT * FROM unnest(?::text[], ?::text[], ?::int[])
+                ON CONFLICT ON CONSTRAINT unique_email_constraint DO NOTHING
+                RETURNING id, email
+                """;
+        Map<String, Long> ids = new HashMap<>();
+        jdbcTemplate.query(sql, ps -> {
+            Connection connection = ps.getConnection();
+            ps.setArray(1, connection.createArrayOf("text", customers.stream().map(Customer::getName).toArray()));
+            ps.setArray(2, connection.createArrayOf("text", customers.stream().map(Customer::getEmail).toArray()));
+            ps.setArray(3, connection.createArrayOf("int4", customers.stream().map(Customer::getAge).toArray()));
+        }, rs -> {
+            ids.put(rs.getString("email"), rs.getLong("id"));
+        });
+        return customers.stream()
+                .map(customer -> Optional.ofNullable(ids.remove(customer.getEmail())))
+                .toList();
     }
 
     @Override
     public void updateCustomer(Customer customer) {
         var sql = """
-                UPDATE customer SET name=?, email=?, age=? WHERE id=?
+                UPDATE customer SET name=?, email=?, age=?, version = version + 1 WHERE id=?
                 """;
-        int update = jdbcTemplate.update(sql, customer.getName(), customer.getEmail(), customer.getAge(), customer.getId());
-        System.out.println("jdbcTemplate.delete: " + update);
+        jdbcTemplate.update(sql, customer.getName(), customer.getEmail(), customer.getAge(), customer.getId());
     }
 
+    @Override
+    public CustomerUpdateResult updateCustomerIfChanged(Customer customer) {
+        // a null version updates unconditionally, otherwise the row must still be at that version
+        var sql = """
+                WITH target AS (
+                    SELECT version, (name, email, age) IS DISTINCT FROM (?, ?, ?) AS changed FROM customer WHERE id = ?
+                ), updated AS (
+                    UPDATE customer SET name = ?, email = ?, age = ?, version = version + 1
+                    WHERE id = ? AND version = coalesce(?::bigint, version) AND (name, email, age) IS DISTINCT FROM (?, ?, ?)
+                    RETURNING id
+                )
+                SELECT (SELECT version FROM target) AS version, (SELECT changed FROM target) AS changed,
+                       EXISTS (SELECT 1 FROM updated) AS updated
+                """;
+        return jdbcTemplate.queryForObject(sql, (rs, rowNum) -> {
+                    long version = rs.getLong("version");
+                    if (rs.wasNull()) {
+                        return CustomerUpdateResult.NOT_FOUND;
+                    }
+                    if (rs.getBoolean("updated")) {
+                        return CustomerUpdateResult.UPDATED;
+                    }
+                    return CustomerUpdateResult.notUpdated(customer.getVersion(), version, rs.getBoolean("changed"));
+                },
+                customer.getName(), customer.getEmail(), customer.getAge(),
+                customer.getId(),
+                customer.getName(), customer.getEmail(), customer.getAge(),
+                customer.getId(), customer.getVersion(),
+                customer.getName(), customer.getEmail(), customer.getAge());
+    }
 
     @Override
-    public void deleteCustomerById(Long id) {
+    public boolean deleteCustomerById(Long id) {
         var sql = """
                 DELETE FROM customer WHERE id = ?
                 """;
-        int update = jdbcTemplate.update(sql, id);
-        System.out.println("jdbcTemplate.delete: " + update);
+        return jdbcTemplate.update(sql, id) > 0;
+    }
+
+    @Override
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public void forEachCustomer(Consumer<Customer> action) {
+        var sql = """
+                SELECT id, name, email, age, version FROM customer
+                """;
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            // pgjdbc only opens a server-side cursor for the fetch size outside auto-commit
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setFetchSize(EXPORT_FETCH_SIZE);
+                try (ResultSet rs = ps.executeQuery()) {
+                    int rowNum = 0;
+                    while (rs.next()) {
+                        action.accept(customerRowMapper.mapRow(rs, rowNum++));
+                    }
+                }
+            } finally {
+                if (autoCommit) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+            }
+            return null;
+        });
     }
 }
@@ -1,10 +1,18 @@
 package com.amigoscode.customer;
 
 import com.amigoscode.exception.DuplicateResourceException;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Repository("jpa")
 public class CustomerJPADataAccessService implements CustomerDAO {
@@ -15,33 +23,97 @@ public class CustomerJPADataAccessService implements CustomerDAO {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<Customer> selectAllCustomers() {
         return customerRepository.findAll();
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public List<Customer> selectCustomersAfter(Long afterId, int limit) {
+        return customerRepository.findByIdGreaterThanOrderByIdAsc(afterId, Limit.of(limit));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public Optional<Customer> selectCustomerById(Long id) {
         return customerRepository.findById(id);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Optional<Customer> selectCustomerByEmail(String email) {
         return customerRepository.findByEmail(email);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        return customerRepository.findAllById(ids);
+    }
+
+    @Override
+    public Optional<Long> selectCustomerVersion(Long id) {
+        return customerRepository.findVersionById(id);
+    }
+
     @Override
     public void insertCustomer(Customer customer) {
         customerRepository.save(customer);
     }
 
+    @Override
+    public Optional<Long> insertCustomerIfAbsent(Customer customer) {
+        try {
+            return Optional.of(customerRepository.saveAndFlush(customer).getId());
+        } catch (DataIntegrityViolationException e) {
+            // only a taken email, as the JDBC DAO's ON CONFLICT; a missing field is translated to the same exception
+            if (e.getCause() instanceof ConstraintViolationException violation
+                    && "unique_email_constraint".equalsIgnoreCase(violation.getConstraintName())) {
+                return Optional.empty();
+            }
+            throw e;
+        }
+    }
+
+    // one read-write transaction, so the lookup of taken emails is not sent to a replica that may be behind
+    @Override
+    @Transactional
+    public List<Optional<Long>> insertCustomers(List<Customer> customers) {
+        Set<String> emails = customers.stream().map(Customer::getEmail).collect(Collectors.toSet());
+        Set<String> taken = customerRepository.findByEmailIn(emails).stream()
+                .map(Customer::getEmail)
+                .collect(Collectors.toCollection(HashSet::new));
+        List<Customer> newCustomers = customers.stream()
+                .filter(customer -> taken.add(customer.getEmail()))
+                .toList();
+        customerRepository.saveAll(newCustomers);
+        return customers.stream()
+                .map(customer -> Optional.ofNullable(customer.getId()))
+                .toList();
+    }
+
     @Override
     public void updateCustomer(Customer customer) {
-        customerRepository.save(customer);
+        // a merge of a customer without a version would be taken for a new entity
+        customerRepository.updateCustomer(customer.getId(), customer.getName(), customer.getEmail(), customer.getAge());
+    }
+
+    @Override
+    public CustomerUpdateResult updateCustomerIfChanged(Customer customer) {
+        if (customerRepository.updateCustomerIfChanged(customer.getId(), customer.getName(), customer.getEmail(), customer.getAge(),
+                customer.getVersion()) > 0) {
+            return CustomerUpdateResult.UPDATED;
+        }
+        // versions only grow, so if the row is still at the expected version it was left alone because nothing changed
+        return customerRepository.findVersionById(customer.getId())
+                .map(version -> CustomerUpdateResult.notUpdated(customer.getVersion(), version, false))
+                .orElse(CustomerUpdateResult.NOT_FOUND);
     }
 
     @Override
-    public void deleteCustomerById(Long id) {
-        customerRepository.deleteById(id);
+    public boolean deleteCustomerById(Long id) {
+        return customerRepository.deleteCustomerById(id) > 0;
     }
 
 }
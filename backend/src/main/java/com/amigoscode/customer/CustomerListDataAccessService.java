@@ -1,50 +1,176 @@
 package com.amigoscode.customer;
 
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Repository;
 
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 @Repository("list")
 public class CustomerListDataAccessService implements CustomerDAO {
-    static List<Customer> customers;
 
-    static {
+    // Stored customers are never handed out, so readers can't mutate them; every read returns a copy.
+    private final ConcurrentNavigableMap<Long, Customer> customersById = new ConcurrentSkipListMap<>();
 
-        customers = new ArrayList<>();
-        customers.add(new Customer(1L, "taylor", "email.taylor", 27));
-        customers.add(new Customer(2L, "nao", "email.nao", 28));
+    // Unique email index. An email is reserved here before its customer becomes visible by id,
+    // which is what makes the uniqueness check and the insert a single atomic step.
+    private final ConcurrentMap<String, Long> idsByEmail = new ConcurrentHashMap<>();
 
+    private final AtomicLong sequence = new AtomicLong();
+
+    // Updates and deletes of the same customer are serialized so that moving a customer to a new
+    // email and releasing the old one can't interleave with another write to that customer.
+    private final Lock[] writeLocks = new Lock[64];
+
+    public CustomerListDataAccessService() {
+        for (int i = 0; i < writeLocks.length; i++) {
+            writeLocks[i] = new ReentrantLock();
+        }
     }
 
     @Override
     public List<Customer> selectAllCustomers() {
-        return customers;
+        return customersById.values().stream()
+                .map(CustomerListDataAccessService::copyOf)
+                .toList();
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfter(Long afterId, int limit) {
+        return customersById.tailMap(afterId, false).values().stream()
+                .limit(limit)
+                .map(CustomerListDataAccessService::copyOf)
+                .toList();
     }
 
     @Override
     public Optional<Customer> selectCustomerById(Long id) {
-        return customers.stream().filter(c -> c.getId() == id).findFirst();
+        return Optional.ofNullable(customersById.get(id)).map(CustomerListDataAccessService::copyOf);
     }
 
     @Override
     public Optional<Customer> selectCustomerByEmail(String email) {
-        return Optional.empty();
+        Long id = idsByEmail.get(email);
+        if (id == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(customersById.get(id))
+                .filter(customer -> customer.getEmail().equals(email))
+                .map(CustomerListDataAccessService::copyOf);
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        return ids.stream()
+                .map(customersById::get)
+                .filter(Objects::nonNull)
+                .map(CustomerListDataAccessService::copyOf)
+                .toList();
     }
 
     @Override
     public void insertCustomer(Customer customer) {
+        if (insertCustomerIfAbsent(customer).isEmpty()) {
+            throw duplicateEmail(customer.getEmail());
+        }
+    }
 
+    @Override
+    public Optional<Long> insertCustomerIfAbsent(Customer customer) {
+        // like a Postgres sequence, an id is consumed even when the insert loses to a duplicate
+        long id = sequence.incrementAndGet();
+        if (idsByEmail.putIfAbsent(customer.getEmail(), id) != null) {
+            return Optional.empty();
+        }
+        customersById.put(id, new Customer(id, customer.getName(), customer.getEmail(), customer.getAge(), 0L));
+        return Optional.of(id);
+    }
+
+    @Override
+    public List<Optional<Long>> insertCustomers(List<Customer> customers) {
+        return customers.stream()
+                .map(this::insertCustomerIfAbsent)
+                .toList();
     }
 
     @Override
     public void updateCustomer(Customer customer) {
+        updateCustomerIfChanged(customer);
+    }
+
+    @Override
+    public CustomerUpdateResult updateCustomerIfChanged(Customer customer) {
+        Long id = customer.getId();
+        Lock lock = writeLockFor(id);
+        lock.lock();
+        try {
+            Customer existing = customersById.get(id);
+            if (existing == null) {
+                return CustomerUpdateResult.NOT_FOUND;
+            }
+            if (customer.getVersion() != null && !customer.getVersion().equals(existing.getVersion())) {
+                return CustomerUpdateResult.VERSION_CONFLICT;
+            }
+            if (existing.equals(customer)) {
+                return CustomerUpdateResult.UNCHANGED;
+            }
+            Customer updated = new Customer(id, customer.getName(), customer.getEmail(), customer.getAge(),
+                    existing.getVersion() + 1);
+            boolean emailChanged = !existing.getEmail().equals(updated.getEmail());
+            if (emailChanged && idsByEmail.putIfAbsent(updated.getEmail(), id) != null) {
+                throw duplicateEmail(updated.getEmail());
+            }
+            customersById.put(id, updated);
+            if (emailChanged) {
+                idsByEmail.remove(existing.getEmail(), id);
+            }
+            return CustomerUpdateResult.UPDATED;
+        } finally {
+            lock.unlock();
+        }
+    }
 
+    @Override
+    public boolean deleteCustomerById(Long id) {
+        Lock lock = writeLockFor(id);
+        lock.lock();
+        try {
+            Customer removed = customersById.remove(id);
+            if (removed == null) {
+                return false;
+            }
+            idsByEmail.remove(removed.getEmail(), id);
+            return true;
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-    public void deleteCustomerById(Long id) {
+    public void forEachCustomer(Consumer<Customer> action) {
+        customersById.values().forEach(customer -> action.accept(copyOf(customer)));
+    }
+
+    private Lock writeLockFor(Long id) {
+        return writeLocks[(int) (id & (writeLocks.length - 1))];
+    }
+
+    private static Customer copyOf(Customer customer) {
+        return new Customer(customer.getId(), customer.getName(), customer.getEmail(), customer.getAge(), customer.getVersion());
+    }
 
+    private static DuplicateKeyException duplicateEmail(String email) {
+        return new DuplicateKeyException("duplicate key value violates unique constraint \"unique_email_constraint\": %s"
+                .formatted(email));
     }
 }
@@ -0,0 +1,36 @@
+package com.amigoscode.customer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public record CustomerLookupResult(List<Customer> customers, List<Long> missingIds) {
+
+    // customers in the order their ids were asked for, each once, and the ids that matched no customer
+    static CustomerLookupResult of(List<Long> ids, Collection<Customer> found) {
+        Map<Long, Customer> customersById = new HashMap<>();
+        for (Customer customer : found) {
+            customersById.put(customer.getId(), customer);
+        }
+        List<Customer> customers = new ArrayList<>(found.size());
+        List<Long> missingIds = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        for (Long id : ids) {
+            if (!seen.add(id)) {
+                continue;
+            }
+            Customer customer = customersById.get(id);
+            if (customer != null) {
+                customers.add(customer);
+            } else {
+                missingIds.add(id);
+            }
+        }
+        return new CustomerLookupResult(customers, missingIds);
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.amigoscode.customer;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+@Aspect
+@Component
+public class CustomerMetricsAspect {
+
+    private final MeterRegistry meterRegistry;
+
+    // Meters are resolved once per implementation and method so the hot path is two map lookups,
+    // a clock read and a lock-free record, with no tag allocation.
+    private final Map<Class<?>, Map<String, Meters>> meters = new ConcurrentHashMap<>();
+
+    public CustomerMetricsAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("execution(public * com.amigoscode.customer.CustomerDAO+.*(..))")
+    public Object timeDao(ProceedingJoinPoint joinPoint) throws Throwable {
+        return record(joinPoint, "customer.dao");
+    }
+
+    @Around("execution(public * com.amigoscode.customer.CustomerService.*(..))")
+    public Object timeService(ProceedingJoinPoint joinPoint) throws Throwable {
+        return record(joinPoint, "customer.service");
+    }
+
+    private Object record(ProceedingJoinPoint joinPoint, String prefix) throws Throwable {
+        Meters methodMeters = meters
+                .computeIfAbsent(ClassUtils.getUserClass(joinPoint.getTarget()), type -> new ConcurrentHashMap<>())
+                .computeIfAbsent(joinPoint.getSignature().getName(),
+                        method -> new Meters(prefix, implementation(joinPoint.getTarget()), method));
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            methodMeters.error(e, System.nanoTime() - start);
+            throw e;
+        }
+        methodMeters.success(result, System.nanoTime() - start);
+        return result;
+    }
+
+    private static String implementation(Object target) {
+        Class<?> type = ClassUtils.getUserClass(target);
+        Repository repository = AnnotationUtils.findAnnotation(type, Repository.class);
+        return repository != null && StringUtils.hasText(repository.value())
+                ? repository.value()
+                : type.getSimpleName();
+    }
+
+    private class Meters {
+
+        private final String prefix;
+        private final String implementation;
+        private final String method;
+        private final Timer success;
+        private volatile DistributionSummary rows;
+
+        Meters(String prefix, String implementation, String method) {
+            this.prefix = prefix;
+            this.implementation = implementation;
+            this.method = method;
+            this.success = timer("none");
+        }
+
+        void success(Object result, long nanos) {
+            success.record(nanos, TimeUnit.NANOSECONDS);
+            if (result instanceof Collection<?> collection) {
+                rows().record(collection.size());
+            } else if (result instanceof CustomerPage page) {
+                rows().record(page.customers().size());
+            }
+        }
+
+        // only registered for methods that return several customers, single-row lookups are covered by the timer
+        private DistributionSummary rows() {
+            if (rows == null) {
+                rows = DistributionSummary.builder(prefix + ".rows")
+                        .description("Customers returned per call")
+                        .baseUnit("rows")
+                        .tags("implementation", implementation, "method", method)
+                        .register(meterRegistry);
+            }
+            return rows;
+        }
+
+        void error(Throwable e, long nanos) {
+            timer(e.getClass().getSimpleName()).record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        private Timer timer(String exception) {
+            return Timer.builder(prefix + ".calls")
+                    .description("Customer %s call latency".formatted(prefix.substring(prefix.indexOf('.') + 1)))
+                    .tags("implementation", implementation,
+                            "method", method,
+                            "outcome", "none".equals(exception) ? "success" : "error",
+                            "exception", exception)
+                    .register(meterRegistry);
+        }
+    }
+}
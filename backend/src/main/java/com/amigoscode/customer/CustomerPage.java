@@ -0,0 +1,7 @@
+package com.amigoscode.customer;
+
+import java.util.List;
+
+public record CustomerPage(List<Customer> customers, Long nextCursor) {
+
+}
@@ -0,0 +1,221 @@
+package com.amigoscode.customer;
+
+import io.r2dbc.spi.Readable;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+@Repository("r2dbc")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class CustomerR2DBCDataAccessService implements ReactiveCustomerDAO {
+
+    private static final int STREAM_FETCH_SIZE = 1000;
+
+    private final DatabaseClient databaseClient;
+
+    public CustomerR2DBCDataAccessService(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    @Override
+    public Flux<Customer> selectAllCustomers() {
+        var sql = """
+                SELECT id, name, email, age, version FROM customer
+                """;
+        // rows are pulled from a server-side portal as downstream demand arrives
+        return databaseClient.sql(sql)
+                .filter(statement -> statement.fetchSize(STREAM_FETCH_SIZE))
+                .map(CustomerR2DBCDataAccessService::mapCustomer)
+                .all();
+    }
+
+    @Override
+    public Flux<Customer> selectCustomersAfter(Long afterId, int limit) {
+        var sql = """
+                SELECT id, name, email, age, version FROM customer
+                WHERE id > $1
+                ORDER BY id
+                LIMIT $2
+                """;
+        return databaseClient.sql(sql)
+                .bind(0, afterId)
+                .bind(1, limit)
+                .map(CustomerR2DBCDataAccessService::mapCustomer)
+                .all();
+    }
+
+    @Override
+    public Mono<Customer> selectCustomerById(Long id) {
+        var sql = """
+                SELECT id, name, email, age, version FROM customer
+                WHERE id = $1
+                """;
+        return databaseClient.sql(sql)
+                .bind(0, id)
+                .map(CustomerR2DBCDataAccessService::mapCustomer)
+                .one();
+    }
+
+    @Override
+    public Mono<Customer> selectCustomerByEmail(String email) {
+        var sql = """
+                SELECT id, name, email, age, version FROM customer
+                WHERE email = $1
+                """;
+        return databaseClient.sql(sql)
+                .bind(0, email)
+                .map(CustomerR2DBCDataAccessService::mapCustomer)
+                .one();
+    }
+
+    @Override
+    public Flux<Customer> selectCustomersByIds(Collection<Long> ids) {
+        var sql = """
+                SELECT id, name, email, age, version FROM customer
+                WHERE id = ANY($1)
+                """;
+        return databaseClient.sql(sql)
+                .bind(0, ids.toArray(Long[]::new))
+                .map(CustomerR2DBCDataAccessService::mapCustomer)
+                .all();
+    }
+
+    @Override
+    public Mono<Long> selectCustomerVersion(Long id) {
+        var sql = """
+                SELECT version FROM customer
+                WHERE id = $1
+                """;
+        return databaseClient.sql(sql)
+                .bind(0, id)
+                .map(row -> row.get("version", Long.class))
+                .one();
+    }
+
+    @Override
+    public Mono<Void> insertCustomer(Customer customer) {
+        var sql = """
+                INSERT INTO customer (name, email, age)
+                VALUES ($1, $2, $3)
+                """;
+        return databaseClient.sql(sql)
+                .bind(0, customer.getName())
+                .bind(1, customer.getEmail())
+                .bind(2, customer.getAge())
+                .then();
+    }
+
+    @Override
+    public Mono<Long> insertCustomerIfAbsent(Customer customer) {
+        var sql = """
+                INSERT INTO customer (name, email, age)
+                VALUES ($1, $2, $3)
+                ON CONFLICT ON CONSTRAINT unique_email_constraint DO NOTHING
+                RETURNING id
+                """;
+        return databaseClient.sql(sql)
+                .bind(0, customer.getName())
+                .bind(1, customer.getEmail())
+                .bind(2, customer.getAge())
+                .map(row -> row.get("id", Long.class))
+                .one();
+    }
+
+    @Override
+    public Mono<List<Optional<Long>>> insertCustomers(List<Customer> customers) {
+        var sql = """
+                INSERT INTO customer (name, email, age)
+                SELECT * FROM unnest($1::text[], $2::text[], $3::int[])
+                ON CONFLICT ON CONSTRAINT unique_email_constraint DO NOTHING
+                RETURNING id, email
+                """;
+        return databaseClient.sql(sql)
+                .bind(0, customers.stream().map(Customer::getName).toArray(String[]::new))
+                .bind(1, customers.stream().map(Customer::getEmail).toArray(String[]::new))
+                .bind(2, customers.stream().map(Customer::getAge).toArray(Integer[]::new))
+                .map(row -> Map.entry(row.get("email", String.class), row.get("id", Long.class)))
+                .all()
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue))
+                .map(ids -> customers.stream()
+                        .map(customer -> Optional.ofNullable(ids.remove(customer.getEmail())))
+                        .toList());
+    }
+
+    @Override
+    public Mono<Void> updateCustomer(Customer customer) {
+        var sql = """
+                UPDATE customer SET name = $1, email = $2, age = $3, version = version + 1 WHERE id = $4
+                """;
+        return databaseClient.sql(sql)
+                .bind(0, customer.getName())
+                .bind(1, customer.getEmail())
+                .bind(2, customer.getAge())
+                .bind(3, customer.getId())
+                .then();
+    }
+
+    @Override
+    public Mono<CustomerUpdateResult> updateCustomerIfChanged(Customer customer) {
+        var sql = """
+                WITH target AS (
+                    SELECT version, (name, email, age) IS DISTINCT FROM ($2, $3, $4) AS changed FROM customer WHERE id = $1
+                ), updated AS (
+                    UPDATE customer SET name = $2, email = $3, age = $4, version = version + 1
+                    WHERE id = $1 AND version = coalesce($5, version) AND (name, email, age) IS DISTINCT FROM ($2, $3, $4)
+                    RETURNING id
+                )
+                SELECT (SELECT version FROM target) AS version, (SELECT changed FROM target) AS changed,
+                       EXISTS (SELECT 1 FROM updated) AS updated
+                """;
+        DatabaseClient.GenericExecuteSpec statement = databaseClient.sql(sql)
+                .bind(0, customer.getId())
+                .bind(1, customer.getName())
+                .bind(2, customer.getEmail())
+                .bind(3, customer.getAge());
+        statement = customer.getVersion() == null
+                ? statement.bindNull(4, Long.class)
+                : statement.bind(4, customer.getVersion());
+        return statement
+                .map(row -> {
+                    Long version = row.get("version", Long.class);
+                    if (version == null) {
+                        return CustomerUpdateResult.NOT_FOUND;
+                    }
+                    if (row.get("updated", Boolean.class)) {
+                        return CustomerUpdateResult.UPDATED;
+                    }
+                    return CustomerUpdateResult.notUpdated(customer.getVersion(), version, row.get("changed", Boolean.class));
+                })
+                .one();
+    }
+
+    @Override
+    public Mono<Boolean> deleteCustomerById(Long id) {
+        var sql = """
+                DELETE FROM customer WHERE id = $1
+                """;
+        return databaseClient.sql(sql)
+                .bind(0, id)
+                .fetch()
+                .rowsUpdated()
+                .map(rows -> rows > 0);
+    }
+
+    private static Customer mapCustomer(Readable row) {
+        return new Customer(
+                row.get("id", Long.class),
+                row.get("name", String.class),
+                row.get("email", String.class),
+                row.get("age", Integer.class),
+                row.get("version", Long.class)
+        );
+    }
+}
@@ -0,0 +1,25 @@
+package com.amigoscode.customer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+public record CustomerRegistrationResult(String email, Long id, Status status) {
+
+    public enum Status {
+        CREATED,
+        DUPLICATE
+    }
+
+    static List<CustomerRegistrationResult> of(List<Customer> customers, List<Optional<Long>> ids) {
+        List<CustomerRegistrationResult> results = new ArrayList<>(customers.size());
+        for (int i = 0; i < customers.size(); i++) {
+            String email = customers.get(i).getEmail();
+            results.add(ids.get(i)
+                    .map(id -> new CustomerRegistrationResult(email, id, Status.CREATED))
+                    .orElseGet(() -> new CustomerRegistrationResult(email, null, Status.DUPLICATE)));
+        }
+        return results;
+    }
+
+}
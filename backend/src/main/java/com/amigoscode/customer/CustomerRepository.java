@@ -1,11 +1,45 @@
 package com.amigoscode.customer;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface CustomerRepository extends JpaRepository<Customer, Long> {
 
     Optional<Customer> findByEmail(String email);
 
+    List<Customer> findByEmailIn(Collection<String> emails);
+
+    List<Customer> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    // read-write like the updates it is compared against, so that it is answered by the primary
+    @Transactional
+    @Query("select c.version from Customer c where c.id = :id")
+    Optional<Long> findVersionById(Long id);
+
+    @Transactional
+    @Modifying
+    @Query("update Customer c set c.name = :name, c.email = :email, c.age = :age, c.version = c.version + 1 where c.id = :id")
+    int updateCustomer(Long id, String name, String email, Integer age);
+
+    @Transactional
+    @Modifying
+    @Query("""
+            update Customer c set c.name = :name, c.email = :email, c.age = :age, c.version = c.version + 1
+            where c.id = :id and c.version = coalesce(:version, c.version)
+            and (c.name is distinct from :name or c.email is distinct from :email or c.age is distinct from :age)
+            """)
+    int updateCustomerIfChanged(Long id, String name, String email, Integer age, Long version);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Customer c where c.id = :id")
+    int deleteCustomerById(Long id);
+
 }
@@ -10,6 +10,7 @@ import java.sql.SQLException;
 public class CustomerRowMapper implements RowMapper<Customer> {
     @Override
     public Customer mapRow(ResultSet rs, int rowNum) throws SQLException {
-        return new Customer(rs.getLong("id"), rs.getString("name"), rs.getString("email"), rs.getInt("age"));
+        return new Customer(rs.getLong("id"), rs.getString("name"), rs.getString("email"), rs.getInt("age"),
+                rs.getLong("version"));
     }
 }
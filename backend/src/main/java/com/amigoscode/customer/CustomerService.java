@@ -1,19 +1,33 @@
 package com.amigoscode.customer;
 
 import com.amigoscode.exception.DuplicateResourceException;
+import com.amigoscode.exception.PreconditionFailedException;
+import com.amigoscode.exception.RequestValidationException;
 import com.amigoscode.exception.ResourceNotFoundException;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Optional;
+import java.util.Objects;
+import java.util.function.Consumer;
 
 @Service
 public class CustomerService {
 
+    static final int MAX_PAGE_SIZE = 1000;
+
+    static final int MAX_BATCH_SIZE = 10_000;
+
+    static final int MAX_LOOKUP_SIZE = 10_000;
+
+    // ids per query, so a large lookup is read as several bounded statements and result sets
+    static final int LOOKUP_CHUNK_SIZE = 1000;
+
     private final CustomerDAO customerDAO;
 
-    public CustomerService(@Qualifier("jdbc") CustomerDAO  customerDAO) {
+    public CustomerService(@Qualifier("coalescing") CustomerDAO customerDAO) {
         this.customerDAO = customerDAO;
     }
 
@@ -21,41 +35,98 @@ public class CustomerService {
         return customerDAO.selectAllCustomers();
     }
 
+    public CustomerPage getCustomersPage(Long after, int limit) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        List<Customer> customers = customerDAO.selectCustomersAfter(after == null ? 0L : after, pageSize);
+        Long nextCursor = customers.size() == pageSize ? customers.get(customers.size() - 1).getId() : null;
+        return new CustomerPage(customers, nextCursor);
+    }
+
+    public void exportCustomers(Consumer<Customer> action) {
+        customerDAO.forEachCustomer(action);
+    }
+
     public Customer getCustomer(Long id) {
         return customerDAO.selectCustomerById(id).orElseThrow(() -> new ResourceNotFoundException("Customer id: %s not found".formatted(id)));
     }
 
-    public void addCustomer(CustomerRegistrationRequest customerRegistrationRequest) {
-        if(customerDAO.selectCustomerByEmail(customerRegistrationRequest.email()).isEmpty()){
-            customerDAO.insertCustomer(new Customer(customerRegistrationRequest.name(),
-                    customerRegistrationRequest.email(),
-                    customerRegistrationRequest.age()));
-        } else {
-            throw new DuplicateResourceException("Customer already exists with email: %s".formatted(customerRegistrationRequest.email()));
+    public CustomerLookupResult getCustomers(List<Long> ids) {
+        List<Customer> found = new ArrayList<>();
+        for (List<Long> chunk : lookupChunks(ids)) {
+            found.addAll(customerDAO.selectCustomersByIds(chunk));
         }
+        return CustomerLookupResult.of(ids, found);
     }
 
-    public void updateCustomer(Long id,CustomerRegistrationRequest customerRegistrationRequest) {
-        Optional<Customer> customer = customerDAO.selectCustomerById(id);
-        if(customer.isEmpty()){
-            throw new ResourceNotFoundException("Customer id: %s not found".formatted(id));
+    static List<List<Long>> lookupChunks(List<Long> ids) {
+        if (ids.size() > MAX_LOOKUP_SIZE) {
+            throw new RequestValidationException("Lookup of %s customers exceeds the limit of %s".formatted(
+                    ids.size(), MAX_LOOKUP_SIZE));
         }
-        if(customer.get().getName().equals(customerRegistrationRequest.name()) &&
-        customer.get().getEmail().equals(customerRegistrationRequest.email()) &&
-        customer.get().getAge() == customerRegistrationRequest.age()){
-            throw new DuplicateResourceException("");
+        if (ids.stream().anyMatch(Objects::isNull)) {
+            throw new RequestValidationException("Customer ids must not be null");
         }
-        customer.get().setName(customerRegistrationRequest.name());
-        customer.get().setEmail(customerRegistrationRequest.email());
-        customer.get().setAge(customerRegistrationRequest.age());
+        List<Long> distinctIds = List.copyOf(new LinkedHashSet<>(ids));
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < distinctIds.size(); from += LOOKUP_CHUNK_SIZE) {
+            chunks.add(distinctIds.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, distinctIds.size())));
+        }
+        return chunks;
+    }
 
-        customerDAO.updateCustomer(customer.get());
+    public long getCustomerVersion(Long id) {
+        return customerDAO.selectCustomerVersion(id).orElseThrow(() -> new ResourceNotFoundException("Customer id: %s not found".formatted(id)));
+    }
+
+    public Long addCustomer(CustomerRegistrationRequest customerRegistrationRequest) {
+        return customerDAO.insertCustomerIfAbsent(new Customer(customerRegistrationRequest.name(),
+                        customerRegistrationRequest.email(),
+                        customerRegistrationRequest.age()))
+                .orElseThrow(() -> new DuplicateResourceException("Customer already exists with email: %s".formatted(customerRegistrationRequest.email())));
+    }
+
+    public List<CustomerRegistrationResult> addCustomers(List<CustomerRegistrationRequest> customerRegistrationRequests) {
+        if (customerRegistrationRequests.size() > MAX_BATCH_SIZE) {
+            throw new RequestValidationException("Batch of %s customers exceeds the limit of %s".formatted(
+                    customerRegistrationRequests.size(), MAX_BATCH_SIZE));
+        }
+        if (customerRegistrationRequests.isEmpty()) {
+            return List.of();
+        }
+        List<Customer> customers = customerRegistrationRequests.stream()
+                .map(request -> new Customer(request.name(), request.email(), request.age()))
+                .toList();
+        return CustomerRegistrationResult.of(customers, customerDAO.insertCustomers(customers));
+    }
+
+    public void updateCustomer(Long id,CustomerRegistrationRequest customerRegistrationRequest) {
+        updateCustomer(id, customerRegistrationRequest, null);
+    }
+
+    // a null expectedVersion overwrites whatever version the customer is at
+    public void updateCustomer(Long id, CustomerRegistrationRequest customerRegistrationRequest, Long expectedVersion) {
+        // every field is written, so a missing one is rejected here rather than left to each DAO's comparison
+        if (customerRegistrationRequest.name() == null || customerRegistrationRequest.email() == null
+                || customerRegistrationRequest.age() == null) {
+            throw new RequestValidationException("Customer name, email and age must not be null");
+        }
+        CustomerUpdateResult result = customerDAO.updateCustomerIfChanged(new Customer(id,
+                customerRegistrationRequest.name(),
+                customerRegistrationRequest.email(),
+                customerRegistrationRequest.age(),
+                expectedVersion));
+        switch (result) {
+            case NOT_FOUND -> throw new ResourceNotFoundException("Customer id: %s not found".formatted(id));
+            case VERSION_CONFLICT -> throw new PreconditionFailedException("Customer id: %s has been modified since version %s".formatted(id, expectedVersion));
+            case UNCHANGED -> throw new DuplicateResourceException("No changes found for customer id: %s".formatted(id));
+            case UPDATED -> {
+            }
+        }
     }
 
     public void deleteCustomer(Long id) {
-        if(customerDAO.selectCustomerById(id).isEmpty()){
+        if(!customerDAO.deleteCustomerById(id)){
             throw new ResourceNotFoundException("Customer id: %s not found".formatted(id));
         }
-        customerDAO.deleteCustomerById(id);
     }
 }
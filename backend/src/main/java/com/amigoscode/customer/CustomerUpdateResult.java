@@ -0,0 +1,16 @@
+package com.amigoscode.customer;
+
+public enum CustomerUpdateResult {
+    UPDATED,
+    UNCHANGED,
+    VERSION_CONFLICT,
+    NOT_FOUND;
+
+    // an existing row that was not updated although its snapshot differed from the request lost to a concurrent update
+    static CustomerUpdateResult notUpdated(Long expectedVersion, long currentVersion, boolean changed) {
+        if (expectedVersion != null && (expectedVersion != currentVersion || changed)) {
+            return VERSION_CONFLICT;
+        }
+        return UNCHANGED;
+    }
+}
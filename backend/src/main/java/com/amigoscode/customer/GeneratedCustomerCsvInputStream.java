@@ -0,0 +1,65 @@
+package com.amigoscode.customer;
+
+import com.github.javafaker.Faker;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+// CSV of customers [first, end), generated as COPY reads it; the same seed always produces the same rows
+class GeneratedCustomerCsvInputStream extends InputStream {
+
+    private final Random random;
+    private final Faker faker;
+    private final long end;
+    private long next;
+    private byte[] line = "name,email,age\n".getBytes(StandardCharsets.UTF_8);
+    private int position;
+
+    GeneratedCustomerCsvInputStream(long seed, long first, long end) {
+        this.random = new Random(seed);
+        this.faker = new Faker(Locale.ENGLISH, random);
+        this.next = first;
+        this.end = end;
+    }
+
+    static Customer generateCustomer(Faker faker, Random random, long index) {
+        String firstName = faker.name().firstName();
+        String lastName = faker.name().lastName();
+        // the index makes the email unique within a run whatever names Faker picks
+        String localPart = (firstName + "." + lastName).toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9.]", "")
+                + "." + index;
+        return new Customer(firstName + " " + lastName, faker.internet().emailAddress(localPart), random.nextInt(16, 99));
+    }
+
+    @Override
+    public int read() {
+        if (position == line.length && !nextLine()) {
+            return -1;
+        }
+        return line[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (position == line.length && !nextLine()) {
+            return -1;
+        }
+        int n = Math.min(len, line.length - position);
+        System.arraycopy(line, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    private boolean nextLine() {
+        if (next == end) {
+            return false;
+        }
+        Customer customer = generateCustomer(faker, random, next++);
+        String text = "\"%s\",%s,%d\n".formatted(customer.getName().replace("\"", "\"\""), customer.getEmail(), customer.getAge());
+        line = text.getBytes(StandardCharsets.UTF_8);
+        position = 0;
+        return true;
+    }
+}
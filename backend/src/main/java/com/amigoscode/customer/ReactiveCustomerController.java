@@ -0,0 +1,144 @@
+package com.amigoscode.customer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+
+@RestController
+@RequestMapping("api/v1/customers")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveCustomerController {
+
+    private static final int IMPORT_BUFFER_DEMAND = 16;
+
+    private static final int EXPORT_BATCH_SIZE = 500;
+
+    private final ReactiveCustomerService customerService;
+
+    private final CustomerImportService customerImportService;
+
+    private final ObjectMapper objectMapper;
+
+    public ReactiveCustomerController(ReactiveCustomerService customerService, CustomerImportService customerImportService, ObjectMapper objectMapper) {
+        this.customerService = customerService;
+        this.customerImportService = customerImportService;
+        this.objectMapper = objectMapper;
+    }
+
+    @GetMapping()
+    public Flux<Customer> getCustomers() {
+        return customerService.getAllCustomers();
+    }
+
+    @GetMapping(params = "limit")
+    public Mono<CustomerPage> getCustomersPage(@RequestParam(required = false) Long after, @RequestParam int limit) {
+        return customerService.getCustomersPage(after, limit);
+    }
+
+    @GetMapping(params = "ids")
+    public Mono<CustomerLookupResult> getCustomersByIds(@RequestParam List<Long> ids) {
+        return customerService.getCustomers(ids);
+    }
+
+    // the same lookup for more ids than fit in a URL
+    @PostMapping("/lookup")
+    public Mono<CustomerLookupResult> lookupCustomers(@RequestBody List<Long> ids) {
+        return customerService.getCustomers(ids);
+    }
+
+    // NDJSON is flushed per element, so rows are encoded in batches rather than one write and flush per customer
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    public Flux<DataBuffer> exportCustomers(ServerHttpResponse response) {
+        ObjectWriter writer = objectMapper.writerFor(Customer.class);
+        return customerService.getAllCustomers()
+                .buffer(EXPORT_BATCH_SIZE)
+                .map(customers -> {
+                    DataBuffer buffer = response.bufferFactory().allocateBuffer(customers.size() * 96);
+                    try {
+                        for (Customer customer : customers) {
+                            buffer.write(writer.writeValueAsBytes(customer)).write((byte) '\n');
+                        }
+                    } catch (JsonProcessingException e) {
+                        DataBufferUtils.release(buffer);
+                        throw new UncheckedIOException(e);
+                    }
+                    return buffer;
+                });
+    }
+
+    @GetMapping("/{id}")
+    public Mono<Customer> getCustomer(@PathVariable Long id, ServerWebExchange exchange) {
+        Mono<Customer> customer = customerService.getCustomer(id)
+                .doOnNext(c -> exchange.getResponse().getHeaders().setETag(CustomerController.etagOf(c.getVersion())));
+        if (exchange.getRequest().getHeaders().getIfNoneMatch().isEmpty()) {
+            return customer;
+        }
+        // as in CustomerController, revalidation reads only the version
+        return customerService.getCustomerVersion(id)
+                .flatMap(version -> exchange.checkNotModified(CustomerController.etagOf(version)) ? Mono.empty() : customer);
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<Void> deleteCustomer(@PathVariable Long id) {
+        return customerService.deleteCustomer(id);
+    }
+
+    @PostMapping
+    public Mono<Long> addCustomer(@RequestBody CustomerRegistrationRequest customerRegistrationRequest) {
+        return customerService.addCustomer(customerRegistrationRequest);
+    }
+
+    @PostMapping("/batch")
+    public Mono<List<CustomerRegistrationResult>> addCustomers(@RequestBody List<CustomerRegistrationRequest> customerRegistrationRequests) {
+        return customerService.addCustomers(customerRegistrationRequests);
+    }
+
+    // COPY is JDBC only, so the upload is bridged to an InputStream and imported off the event loop
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public Mono<CustomerImportResult> importCustomers(@RequestBody Flux<DataBuffer> csv) {
+        return Mono.fromCallable(() -> {
+                    // toIterable requests IMPORT_BUFFER_DEMAND buffers at a time, so a slow COPY slows the upload down
+                    Iterator<DataBuffer> buffers = csv
+                            .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                            .toIterable(IMPORT_BUFFER_DEMAND)
+                            .iterator();
+                    try (InputStream inputStream = new SequenceInputStream(new Enumeration<>() {
+                        @Override
+                        public boolean hasMoreElements() {
+                            return buffers.hasNext();
+                        }
+
+                        @Override
+                        public InputStream nextElement() {
+                            return buffers.next().asInputStream(true);
+                        }
+                    })) {
+                        return customerImportService.importCsv(inputStream);
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @PutMapping("/{id}")
+    public Mono<Void> updateCustomer(@RequestBody CustomerRegistrationRequest customerRegistrationRequest, @PathVariable Long id,
+                                     @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return customerService.updateCustomer(id, customerRegistrationRequest, CustomerController.versionOf(ifMatch));
+    }
+}
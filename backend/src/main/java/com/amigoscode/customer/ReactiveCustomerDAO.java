@@ -0,0 +1,26 @@
+package com.amigoscode.customer;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface ReactiveCustomerDAO {
+
+    Flux<Customer> selectAllCustomers();
+    Flux<Customer> selectCustomersAfter(Long afterId, int limit);
+    Mono<Customer> selectCustomerById(Long id);
+    Mono<Customer> selectCustomerByEmail(String email);
+    // the customers among ids that exist, in no particular order
+    Flux<Customer> selectCustomersByIds(Collection<Long> ids);
+    Mono<Long> selectCustomerVersion(Long id);
+    Mono<Void> insertCustomer(Customer customer);
+    Mono<Long> insertCustomerIfAbsent(Customer customer);
+    Mono<List<Optional<Long>>> insertCustomers(List<Customer> customers);
+    Mono<Void> updateCustomer(Customer customer);
+    Mono<CustomerUpdateResult> updateCustomerIfChanged(Customer customer);
+    Mono<Boolean> deleteCustomerById(Long id);
+
+}
@@ -0,0 +1,107 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.DuplicateResourceException;
+import com.amigoscode.exception.PreconditionFailedException;
+import com.amigoscode.exception.RequestValidationException;
+import com.amigoscode.exception.ResourceNotFoundException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static com.amigoscode.customer.CustomerService.MAX_BATCH_SIZE;
+import static com.amigoscode.customer.CustomerService.MAX_PAGE_SIZE;
+
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveCustomerService {
+
+    private final ReactiveCustomerDAO customerDAO;
+
+    public ReactiveCustomerService(ReactiveCustomerDAO customerDAO) {
+        this.customerDAO = customerDAO;
+    }
+
+    public Flux<Customer> getAllCustomers() {
+        return customerDAO.selectAllCustomers();
+    }
+
+    public Mono<CustomerPage> getCustomersPage(Long after, int limit) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        return customerDAO.selectCustomersAfter(after == null ? 0L : after, pageSize)
+                .collectList()
+                .map(customers -> new CustomerPage(customers,
+                        customers.size() == pageSize ? customers.get(customers.size() - 1).getId() : null));
+    }
+
+    public Mono<Customer> getCustomer(Long id) {
+        return customerDAO.selectCustomerById(id)
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("Customer id: %s not found".formatted(id))));
+    }
+
+    public Mono<CustomerLookupResult> getCustomers(List<Long> ids) {
+        return Mono.fromCallable(() -> CustomerService.lookupChunks(ids))
+                .flatMapMany(Flux::fromIterable)
+                .concatMap(customerDAO::selectCustomersByIds)
+                .collectList()
+                .map(found -> CustomerLookupResult.of(ids, found));
+    }
+
+    public Mono<Long> getCustomerVersion(Long id) {
+        return customerDAO.selectCustomerVersion(id)
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("Customer id: %s not found".formatted(id))));
+    }
+
+    public Mono<Long> addCustomer(CustomerRegistrationRequest customerRegistrationRequest) {
+        return customerDAO.insertCustomerIfAbsent(new Customer(customerRegistrationRequest.name(),
+                        customerRegistrationRequest.email(),
+                        customerRegistrationRequest.age()))
+                .switchIfEmpty(Mono.error(() -> new DuplicateResourceException("Customer already exists with email: %s".formatted(customerRegistrationRequest.email()))));
+    }
+
+    public Mono<List<CustomerRegistrationResult>> addCustomers(List<CustomerRegistrationRequest> customerRegistrationRequests) {
+        if (customerRegistrationRequests.size() > MAX_BATCH_SIZE) {
+            return Mono.error(new RequestValidationException("Batch of %s customers exceeds the limit of %s".formatted(
+                    customerRegistrationRequests.size(), MAX_BATCH_SIZE)));
+        }
+        if (customerRegistrationRequests.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        List<Customer> customers = customerRegistrationRequests.stream()
+                .map(request -> new Customer(request.name(), request.email(), request.age()))
+                .toList();
+        return customerDAO.insertCustomers(customers)
+                .map(ids -> CustomerRegistrationResult.of(customers, ids));
+    }
+
+    public Mono<Void> updateCustomer(Long id, CustomerRegistrationRequest customerRegistrationRequest) {
+        return updateCustomer(id, customerRegistrationRequest, null);
+    }
+
+    public Mono<Void> updateCustomer(Long id, CustomerRegistrationRequest customerRegistrationRequest, Long expectedVersion) {
+        if (customerRegistrationRequest.name() == null || customerRegistrationRequest.email() == null
+                || customerRegistrationRequest.age() == null) {
+            return Mono.error(new RequestValidationException("Customer name, email and age must not be null"));
+        }
+        return customerDAO.updateCustomerIfChanged(new Customer(id,
+                        customerRegistrationRequest.name(),
+                        customerRegistrationRequest.email(),
+                        customerRegistrationRequest.age(),
+                        expectedVersion))
+                .flatMap(result -> switch (result) {
+                    case NOT_FOUND -> Mono.error(new ResourceNotFoundException("Customer id: %s not found".formatted(id)));
+                    case VERSION_CONFLICT -> Mono.error(new PreconditionFailedException("Customer id: %s has been modified since version %s".formatted(id, expectedVersion)));
+                    case UNCHANGED -> Mono.error(new DuplicateResourceException("No changes found for customer id: %s".formatted(id)));
+                    case UPDATED -> Mono.empty();
+                });
+    }
+
+    public Mono<Void> deleteCustomer(Long id) {
+        return customerDAO.deleteCustomerById(id)
+                .flatMap(deleted -> deleted
+                        ? Mono.<Void>empty()
+                        : Mono.error(new ResourceNotFoundException("Customer id: %s not found".formatted(id))));
+    }
+}
@@ -0,0 +1,188 @@
+package com.amigoscode.customer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+// Hands out connections for read-only transactions from the healthy replicas in turn and all others from the primary.
+// The transaction is only known to be read-only once it has begun, after JPA has already asked for its connection,
+// so this is used behind a LazyConnectionDataSourceProxy, which defers the choice to the first statement.
+public class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private static final String PRIMARY_POSITION_SQL = """
+            SELECT pg_current_wal_lsn() - '0/0'
+            """;
+
+    // a server that is not in recovery is no replica of the primary, whatever it has replayed
+    private static final String REPLICA_POSITION_SQL = """
+            SELECT pg_is_in_recovery(), pg_last_wal_replay_lsn() - '0/0'
+            """;
+
+    private final DataSource primary;
+
+    private final List<Replica> replicas;
+
+    private final Duration maxLag;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final LongSupplier nanoClock;
+
+    // the primary's WAL position at each recent check, oldest first
+    private final Deque<WalPosition> primaryPositions = new ArrayDeque<>();
+
+    private ScheduledExecutorService healthChecks;
+
+    public ReplicaRoutingDataSource(DataSource primary, List<? extends DataSource> replicas, Duration maxLag) {
+        this(primary, replicas, maxLag, System::nanoTime);
+    }
+
+    ReplicaRoutingDataSource(DataSource primary, List<? extends DataSource> replicas, Duration maxLag, LongSupplier nanoClock) {
+        this.primary = primary;
+        this.replicas = replicas.stream().map(Replica::new).toList();
+        this.maxLag = maxLag;
+        this.nanoClock = nanoClock;
+    }
+
+    // replicas receive no reads until their first check has passed
+    public void startHealthChecks(Duration interval) {
+        healthChecks = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("replica-health-check").daemon().factory());
+        healthChecks.scheduleWithFixedDelay(this::checkHealth, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return route(DataSource::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return route(dataSource -> dataSource.getConnection(username, password));
+    }
+
+    private Connection route(ConnectionSource connections) throws SQLException {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            for (int i = 0; i < replicas.size(); i++) {
+                Replica replica = replicas.get(Math.floorMod(next.getAndIncrement(), replicas.size()));
+                if (replica.healthy) {
+                    try {
+                        return connections.get(replica.dataSource);
+                    } catch (SQLException e) {
+                        replica.markDown(e.getMessage());
+                    }
+                }
+            }
+        }
+        return connections.get(primary);
+    }
+
+    // A replica is current enough when it has replayed all the WAL the primary had written max-lag ago. Neither
+    // an idle primary nor lag measured on the replica alone tells that apart from a replica whose WAL receiver has
+    // lost the primary, which has nothing left to replay however far behind it falls.
+    void checkHealth() {
+        if (replicas.isEmpty()) {
+            return;
+        }
+        long now = nanoClock.getAsLong();
+        try (Connection connection = primary.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(PRIMARY_POSITION_SQL)) {
+            rs.next();
+            primaryPositions.addLast(new WalPosition(now, rs.getLong(1)));
+        } catch (SQLException e) {
+            replicas.forEach(replica -> replica.markDown("primary WAL position unknown: " + e.getMessage()));
+            return;
+        }
+        // the latest position at least max-lag old, or the oldest there is until one is that old
+        long cutoff = now - maxLag.toNanos();
+        WalPosition reference = primaryPositions.removeFirst();
+        while (!primaryPositions.isEmpty() && primaryPositions.getFirst().nanoTime() <= cutoff) {
+            reference = primaryPositions.removeFirst();
+        }
+        primaryPositions.addFirst(reference);
+        long required = reference.lsn();
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery(REPLICA_POSITION_SQL)) {
+                rs.next();
+                boolean inRecovery = rs.getBoolean(1);
+                long replayed = rs.getLong(2);
+                if (!inRecovery) {
+                    replica.markDown("not in recovery, so not replicating from the primary");
+                } else if (rs.wasNull() || replayed < required) {
+                    replica.markDown("replayed WAL up to %d, short of the primary's %d from %s ago"
+                            .formatted(replayed, required, maxLag));
+                } else {
+                    replica.markUp();
+                }
+            } catch (SQLException e) {
+                replica.markDown(e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (healthChecks != null) {
+            healthChecks.shutdownNow();
+        }
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface ConnectionSource {
+        Connection get(DataSource dataSource) throws SQLException;
+    }
+
+    private record WalPosition(long nanoTime, long lsn) {
+    }
+
+    private static final class Replica {
+
+        private final DataSource dataSource;
+
+        private volatile boolean healthy;
+
+        private Replica(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        private void markUp() {
+            if (!healthy) {
+                log.info("Replica {} is serving reads", dataSource);
+                healthy = true;
+            }
+        }
+
+        private void markDown(String reason) {
+            if (healthy) {
+                log.warn("Replica {} is not serving reads: {}", dataSource, reason);
+                healthy = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.amigoscode.customer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32C;
+
+// Customers are spread over a fixed number of buckets and the buckets over the shards by consistent hashing:
+// each shard has points on a hash ring and owns the buckets that hash to just before them. A new customer's
+// bucket is the hash of its email and is kept in the low bits of its id, so both the email and the id locate
+// the shard. Nothing moves customers between shards, so the shards and their order are fixed once customers
+// exist: even appending one hands it about 1/N of the buckets, whose customers it does not have. Changing them
+// needs the data rebalanced offline first, and ShardedCustomerDAOConfig refuses to start on a changed list.
+public class ShardRing {
+
+    static final int BUCKETS = 1024;
+
+    private static final int POINTS_PER_SHARD = 64;
+
+    private final int[] shardOfBucket = new int[BUCKETS];
+
+    public ShardRing(int shards) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("Expected at least one shard but got %d".formatted(shards));
+        }
+        TreeMap<Long, Integer> ring = new TreeMap<>();
+        for (int shard = 0; shard < shards; shard++) {
+            for (int point = 0; point < POINTS_PER_SHARD; point++) {
+                ring.put(mix((long) shard << 32 | point), shard);
+            }
+        }
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            // buckets hash from negative keys, so that they never coincide with a shard's point
+            Map.Entry<Long, Integer> owner = ring.ceilingEntry(mix(~(long) bucket));
+            shardOfBucket[bucket] = (owner != null ? owner : ring.firstEntry()).getValue();
+        }
+    }
+
+    public int shardOf(long id) {
+        return shardOfBucket[bucketOf(id)];
+    }
+
+    public int shardOfEmail(String email) {
+        return shardOfBucket[bucketOf(email)];
+    }
+
+    static int bucketOf(long id) {
+        return Math.floorMod(id, BUCKETS);
+    }
+
+    // CRC32C rather than String.hashCode, whose low bits are poorly spread over similar strings
+    static int bucketOf(String email) {
+        CRC32C crc = new CRC32C();
+        crc.update(email.getBytes(StandardCharsets.UTF_8));
+        return (int) (crc.getValue() % BUCKETS);
+    }
+
+    // the MurmurHash3 finalizer
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb3fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
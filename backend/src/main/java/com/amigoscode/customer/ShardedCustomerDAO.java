@@ -0,0 +1,349 @@
+package com.amigoscode.customer;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+// Customers spread over several databases, see ShardRing for which customer lives where. A customer whose email
+// has changed stays on the shard its id names, so each shard also holds the part of a global email directory
+// (customer_email) for the emails that hash to it: looking up or claiming an email, and so the uniqueness check
+// on registration, involves that one shard. Queries over every shard run on all of them in parallel.
+public class ShardedCustomerDAO implements CustomerDAO, AutoCloseable {
+
+    private final List<Shard> shards;
+
+    private final ShardRing ring;
+
+    private final CustomerRowMapper customerRowMapper;
+
+    private final Duration claimTimeout;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ShardedCustomerDAO(List<? extends DataSource> dataSources, CustomerRowMapper customerRowMapper,
+                              Duration claimTimeout) {
+        this.shards = dataSources.stream()
+                .map(dataSource -> new Shard(dataSource, new JdbcTemplate(dataSource),
+                        new CustomerJDBCDataAccessService(new JdbcTemplate(dataSource), customerRowMapper)))
+                .toList();
+        this.ring = new ShardRing(shards.size());
+        this.customerRowMapper = customerRowMapper;
+        this.claimTimeout = claimTimeout;
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return gather(shards, shard -> shard.customers().selectAllCustomers()).stream()
+                .flatMap(List::stream)
+                .toList();
+    }
+
+    // every shard's first page after afterId, of which the first limit overall are the page
+    @Override
+    public List<Customer> selectCustomersAfter(Long afterId, int limit) {
+        return gather(shards, shard -> shard.customers().selectCustomersAfter(afterId, limit)).stream()
+                .flatMap(List::stream)
+                .sorted(Comparator.comparing(Customer::getId))
+                .limit(limit)
+                .toList();
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        return shardOf(id).customers().selectCustomerById(id);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerByEmail(String email) {
+        // the customer is joined in when it still lives on the email's shard, as it does until its email changes
+        var sql = """
+                SELECT customer_email.customer_id, customer.id, customer.name, customer.email, customer.age, customer.version
+                FROM customer_email
+                LEFT JOIN customer ON customer.id = customer_email.customer_id AND customer.email = customer_email.email
+                WHERE customer_email.email = ?
+                """;
+        List<EmailClaim> claims = shardOfEmail(email).jdbcTemplate().query(sql, (rs, rowNum) -> {
+            long customerId = rs.getLong("customer_id");
+            rs.getLong("id");
+            return new EmailClaim(customerId, rs.wasNull() ? null : customerRowMapper.mapRow(rs, rowNum));
+        }, email);
+        if (claims.isEmpty()) {
+            return Optional.empty();
+        }
+        EmailClaim claim = claims.get(0);
+        if (claim.customer() != null) {
+            return Optional.of(claim.customer());
+        }
+        return selectCustomerById(claim.customerId()).filter(customer -> customer.getEmail().equals(email));
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        Map<Shard, List<Long>> idsByShard = ids.stream().collect(Collectors.groupingBy(this::shardOf));
+        return gather(idsByShard.entrySet(), entry -> entry.getKey().customers().selectCustomersByIds(entry.getValue()))
+                .stream()
+                .flatMap(List::stream)
+                .toList();
+    }
+
+    @Override
+    public Optional<Long> selectCustomerVersion(Long id) {
+        return shardOf(id).customers().selectCustomerVersion(id);
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        if (insertCustomerIfAbsent(customer).isEmpty()) {
+            throw duplicateEmail(customer.getEmail());
+        }
+    }
+
+    @Override
+    public Optional<Long> insertCustomerIfAbsent(Customer customer) {
+        return insertCustomers(List.of(customer)).get(0);
+    }
+
+    @Override
+    public List<Optional<Long>> insertCustomers(List<Customer> customers) {
+        Map<Shard, List<Customer>> customersByShard = customers.stream()
+                .collect(Collectors.groupingBy(customer -> shardOfEmail(customer.getEmail()),
+                        LinkedHashMap::new, Collectors.toList()));
+        Map<String, Long> ids = new HashMap<>();
+        gather(customersByShard.entrySet(), entry -> insertCustomers(entry.getKey(), entry.getValue()))
+                .forEach(ids::putAll);
+        return customers.stream()
+                .map(customer -> Optional.ofNullable(ids.remove(customer.getEmail())))
+                .toList();
+    }
+
+    @Override
+    public void updateCustomer(Customer customer) {
+        updateClaimingEmail(customer, customers -> {
+            customers.updateCustomer(customer);
+            return true;
+        }, updated -> updated, false);
+    }
+
+    @Override
+    public CustomerUpdateResult updateCustomerIfChanged(Customer customer) {
+        return updateClaimingEmail(customer, customers -> customers.updateCustomerIfChanged(customer),
+                CustomerUpdateResult.UPDATED::equals, CustomerUpdateResult.NOT_FOUND);
+    }
+
+    @Override
+    public boolean deleteCustomerById(Long id) {
+        var sql = """
+                DELETE FROM customer WHERE id = ?
+                RETURNING email
+                """;
+        List<String> emails = shardOf(id).jdbcTemplate().queryForList(sql, String.class, id);
+        emails.forEach(email -> releaseEmail(email, id));
+        return !emails.isEmpty();
+    }
+
+    // one shard after another, since the action need not be thread-safe
+    @Override
+    public void forEachCustomer(Consumer<Customer> action) {
+        shards.forEach(shard -> shard.customers().forEachCustomer(action));
+    }
+
+    @Override
+    public void close() throws Exception {
+        executor.shutdownNow();
+        for (Shard shard : shards) {
+            if (shard.dataSource() instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    // The id is allocated on the shard with the customer's bucket in its low bits, and the customer is inserted
+    // only where its email could be claimed, in the same statement so that neither happens without the other.
+    private Map<String, Long> insertCustomers(Shard shard, List<Customer> customers) {
+        var sql = """
+                WITH new AS (
+                    SELECT nextval('customer_id_seq') * ? + bucket AS id, name, email, age
+                    FROM unnest(?::text[], ?::text[], ?::int[], ?::int[]) AS input (name, email, age, bucket)
+                ), claimed AS (
+                    INSERT INTO customer_email (email, customer_id)
+                    SELECT email, id FROM new
+                    ON CONFLICT (email) DO NOTHING
+                    RETURNING customer_id
+                )
+                INSERT INTO customer (id, name, email, age)
+                SELECT new.id, new.name, new.email, new.age FROM new JOIN claimed ON claimed.customer_id = new.id
+                RETURNING id, email
+                """;
+        Map<String, Long> ids = new HashMap<>();
+        shard.jdbcTemplate().query(sql, ps -> {
+            Connection connection = ps.getConnection();
+            ps.setInt(1, ShardRing.BUCKETS);
+            ps.setArray(2, connection.createArrayOf("text", customers.stream().map(Customer::getName).toArray()));
+            ps.setArray(3, connection.createArrayOf("text", customers.stream().map(Customer::getEmail).toArray()));
+            ps.setArray(4, connection.createArrayOf("int4", customers.stream().map(Customer::getAge).toArray()));
+            ps.setArray(5, connection.createArrayOf("int4",
+                    customers.stream().map(customer -> ShardRing.bucketOf(customer.getEmail())).toArray()));
+        }, rs -> {
+            ids.put(rs.getString("email"), rs.getLong("id"));
+        });
+        return ids;
+    }
+
+    // The new email is claimed before the customer takes it and the old one released after, so no two customers
+    // ever hold the same email. The claim stays pending until the customer has taken the email, and if it was
+    // taken over meanwhile, after claim-timeout, the customer gives the email back. A failure in between leaves
+    // a claim behind, which claimEmail later takes over.
+    private <T> T updateClaimingEmail(Customer customer, Function<CustomerDAO, T> update, Predicate<T> updated, T notFound) {
+        Long id = customer.getId();
+        Shard shard = shardOf(id);
+        CustomerDAO customers = shard.customers();
+        Optional<String> oldEmail = customers.selectCustomerById(id).map(Customer::getEmail);
+        if (oldEmail.isEmpty()) {
+            return notFound;
+        }
+        if (oldEmail.get().equals(customer.getEmail())) {
+            return update.apply(customers);
+        }
+        if (!claimEmail(customer.getEmail(), id)) {
+            throw duplicateEmail(customer.getEmail());
+        }
+        T result;
+        try {
+            result = update.apply(customers);
+        } catch (RuntimeException e) {
+            releaseEmail(customer.getEmail(), id);
+            throw e;
+        }
+        if (!updated.test(result)) {
+            releaseEmail(customer.getEmail(), id);
+            return result;
+        }
+        if (!settleEmail(customer.getEmail(), id)) {
+            var giveBack = """
+                    UPDATE customer SET email = ?, version = version + 1 WHERE id = ? AND email = ?
+                    """;
+            shard.jdbcTemplate().update(giveBack, oldEmail.get(), id, customer.getEmail());
+            throw duplicateEmail(customer.getEmail());
+        }
+        releaseEmail(oldEmail.get(), id);
+        return result;
+    }
+
+    // A claim is taken over only when provably abandoned: pending for longer than any email change takes, or
+    // settled while its customer no longer holds the email. Each takeover re-checks its condition as it writes,
+    // so a claim that its customer has meanwhile renewed stays with it.
+    private boolean claimEmail(String email, Long customerId) {
+        JdbcTemplate directory = shardOfEmail(email).jdbcTemplate();
+        var claim = """
+                INSERT INTO customer_email (email, customer_id, claimed_at) VALUES (?, ?, now())
+                ON CONFLICT (email) DO NOTHING
+                """;
+        if (directory.update(claim, email, customerId) > 0) {
+            return true;
+        }
+        var owner = """
+                SELECT customer_id, claimed_at IS NULL AS settled FROM customer_email WHERE email = ?
+                """;
+        List<EmailOwner> owners = directory.query(owner,
+                (rs, rowNum) -> new EmailOwner(rs.getLong("customer_id"), rs.getBoolean("settled")), email);
+        if (owners.isEmpty()) {
+            // released since the insert above
+            return claimEmail(email, customerId);
+        }
+        EmailOwner current = owners.get(0);
+        if (current.customerId() == customerId) {
+            // the customer's own claim, left behind or settled, is renewed so that it is not taken over meanwhile
+            var renew = """
+                    UPDATE customer_email SET claimed_at = now() WHERE email = ? AND customer_id = ?
+                    """;
+            return directory.update(renew, email, customerId) > 0 || claimEmail(email, customerId);
+        }
+        if (!current.settled()) {
+            var takeOverAbandoned = """
+                    UPDATE customer_email SET customer_id = ?, claimed_at = now()
+                    WHERE email = ? AND customer_id = ? AND claimed_at < now() - ? * interval '1 millisecond'
+                    """;
+            return directory.update(takeOverAbandoned, customerId, email, current.customerId(),
+                    claimTimeout.toMillis()) > 0;
+        }
+        if (selectCustomerById(current.customerId()).filter(customer -> customer.getEmail().equals(email)).isPresent()) {
+            return false;
+        }
+        // left behind by an email change or delete that failed halfway
+        var takeOverSettled = """
+                UPDATE customer_email SET customer_id = ?, claimed_at = now()
+                WHERE email = ? AND customer_id = ? AND claimed_at IS NULL
+                """;
+        return directory.update(takeOverSettled, customerId, email, current.customerId()) > 0;
+    }
+
+    // false when the claim was taken over while pending
+    private boolean settleEmail(String email, Long customerId) {
+        var sql = """
+                UPDATE customer_email SET claimed_at = NULL WHERE email = ? AND customer_id = ?
+                """;
+        return shardOfEmail(email).jdbcTemplate().update(sql, email, customerId) > 0;
+    }
+
+    private void releaseEmail(String email, Long customerId) {
+        var sql = """
+                DELETE FROM customer_email WHERE email = ? AND customer_id = ?
+                """;
+        shardOfEmail(email).jdbcTemplate().update(sql, email, customerId);
+    }
+
+    private Shard shardOf(Long id) {
+        return shards.get(ring.shardOf(id));
+    }
+
+    private Shard shardOfEmail(String email) {
+        return shards.get(ring.shardOfEmail(email));
+    }
+
+    // runs the query for each target, in parallel when there is more than one
+    private <S, T> List<T> gather(Collection<S> targets, Function<S, T> query) {
+        if (targets.size() == 1) {
+            return List.of(query.apply(targets.iterator().next()));
+        }
+        List<CompletableFuture<T>> results = targets.stream()
+                .map(target -> CompletableFuture.supplyAsync(() -> query.apply(target), executor))
+                .toList();
+        try {
+            return results.stream().map(CompletableFuture::join).toList();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private static DuplicateKeyException duplicateEmail(String email) {
+        return new DuplicateKeyException("duplicate key value violates unique constraint \"customer_email_pkey\": %s"
+                .formatted(email));
+    }
+
+    private record Shard(DataSource dataSource, JdbcTemplate jdbcTemplate, CustomerDAO customers) {
+    }
+
+    private record EmailClaim(long customerId, Customer customer) {
+    }
+
+    private record EmailOwner(long customerId, boolean settled) {
+    }
+}
@@ -0,0 +1,92 @@
+package com.amigoscode.customer;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// Only with customer.sharding.urls set; customers then live on those databases instead of spring.datasource.url
+// (see BatchingCustomerDAO). Every shard is migrated on startup, as Spring Boot migrates the main database.
+// Not sharded: the reactive stack and read replicas stay on spring.datasource, and CSV import refuses to run.
+@Configuration
+@ConditionalOnProperty(prefix = "customer.sharding", name = "urls")
+public class ShardedCustomerDAOConfig {
+
+    // shard pools are sized and tuned like the main one
+    @Bean
+    public ShardedCustomerDAO shardedCustomerDAO(Environment environment,
+                                                 DataSourceProperties dataSourceProperties,
+                                                 CustomerRowMapper customerRowMapper,
+                                                 @Value("${customer.sharding.urls}") List<String> urls,
+                                                 @Value("${customer.sharding.claim-timeout}") Duration claimTimeout) {
+        List<HikariDataSource> shards = new ArrayList<>();
+        for (String url : urls) {
+            HikariConfig config = new HikariConfig();
+            Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(config));
+            config.setJdbcUrl(url);
+            config.setUsername(dataSourceProperties.determineUsername());
+            config.setPassword(dataSourceProperties.determinePassword());
+            config.setPoolName("shard-" + (shards.size() + 1));
+            shards.add(new HikariDataSource(config));
+            try {
+                migrate(shards.get(shards.size() - 1));
+                checkPlacement(shards.get(shards.size() - 1), shards.size() - 1, urls.size());
+            } catch (RuntimeException e) {
+                shards.forEach(HikariDataSource::close);
+                throw e;
+            }
+        }
+        return new ShardedCustomerDAO(shards, customerRowMapper, claimTimeout);
+    }
+
+    // A shard set up as shard i of n holds the customers ShardRing places there, so a list in which it comes
+    // elsewhere, or that has grown or shrunk, would look for customers on the wrong shards.
+    static void checkPlacement(DataSource shard, int index, int shards) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(shard);
+        var record = """
+                INSERT INTO customer_shard (shard, shards) VALUES (?, ?)
+                ON CONFLICT (placed) DO NOTHING
+                """;
+        jdbcTemplate.update(record, index + 1, shards);
+        var placement = """
+                SELECT shard, shards FROM customer_shard
+                """;
+        jdbcTemplate.query(placement, rs -> {
+            if (rs.getInt("shard") != index + 1 || rs.getInt("shards") != shards) {
+                throw new IllegalStateException(("Shard %d of %d in customer.sharding.urls was set up as shard %d of %d; "
+                        + "the shards are fixed once customers exist, see ShardRing")
+                        .formatted(index + 1, shards, rs.getInt("shard"), rs.getInt("shards")));
+            }
+        });
+    }
+
+    // the customer schema, then the email directory that only shards have, each with its own history
+    static void migrate(DataSource shard) {
+        Flyway.configure()
+                .dataSource(shard)
+                .locations("classpath:db/migration")
+                .load()
+                .migrate();
+        Flyway.configure()
+                .dataSource(shard)
+                .locations("classpath:db/shard")
+                .table("flyway_shard_schema_history")
+                .baselineOnMigrate(true)
+                .baselineVersion("0")
+                .load()
+                .migrate();
+    }
+}
@@ -1,43 +1,68 @@
 package com.amigoscode;
 
-import com.amigoscode.customer.Customer;
-import com.amigoscode.customer.CustomerRepository;
-import com.github.javafaker.Faker;
+import com.amigoscode.customer.CustomerGenerator;
+import com.amigoscode.customer.CustomerImportResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.LazyInitializationExcludeFilter;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationInitializer;
 import org.springframework.context.annotation.Bean;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Random;
 
 @SpringBootApplication
 public class main {
 
+    private static final Logger log = LoggerFactory.getLogger(main.class);
+
 
     public static void main(String[] args) {
         SpringApplication.run(main.class, args);
     }
 
+    // checked at run time rather than with @ConditionalOnProperty, which AOT processing would fix at build time,
+    // and the generator is looked up lazily so a disabled runner does not create it
     @Bean
-    CommandLineRunner commandLineRunner(CustomerRepository customerRepository) {
+    CommandLineRunner commandLineRunner(ObjectProvider<CustomerGenerator> customerGenerator,
+                                        @Value("${customer.seed.enabled:false}") boolean seedEnabled) {
         return args -> {
-            Faker faker = new Faker();
-            Random random = new Random();
-            List<Customer> customers = new ArrayList<>();
-            for (int i = 0; i < 10; i++) {
-                String name = faker.name().fullName(); // Miss Samanta Schmidt
-                String email = faker.internet().emailAddress(); // Emory
-                Integer age = random.nextInt(16, 99); // Barton
-
-                customers.add(new Customer(name, email, age));
+            if (seedEnabled) {
+                customerGenerator.getObject().generate(10, new Random().nextLong(), 1);
             }
+        };
+    }
 
-            customerRepository.saveAll(customers);
+    // java -jar app.jar --spring.main.web-application-type=none --customer.generate.count=5000000
+    //     [--customer.generate.seed=42] [--customer.generate.parallelism=8]
+    @Bean
+    CommandLineRunner customerGenerationRunner(ObjectProvider<CustomerGenerator> customerGenerator,
+                                               @Value("${customer.generate.count:0}") long count,
+                                               @Value("${customer.generate.seed:0}") long seed,
+                                               @Value("${customer.generate.parallelism:0}") int parallelism,
+                                               @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize) {
+        return args -> {
+            if (count <= 0) {
+                return;
+            }
+            // each worker holds a pooled connection for a whole partition
+            int workers = parallelism > 0 ? parallelism : Math.min(Runtime.getRuntime().availableProcessors(), poolSize);
+            CustomerImportResult result = customerGenerator.getObject().generate(count, seed, workers);
+            log.info("Generated {} customers with seed {} on {} workers: {} inserted, {} skipped as duplicates, {} rows/s",
+                    count, seed, workers, result.imported(), result.rejected(), result.rowsPerSecond());
         };
     }
 
+    // with lazy initialization Flyway would otherwise migrate on the first request that needs the database
+    @Bean
+    static LazyInitializationExcludeFilter flywayLazyInitializationExcludeFilter() {
+        return LazyInitializationExcludeFilter.forBeanTypes(FlywayMigrationInitializer.class);
+    }
+
 
 
 
@@ -0,0 +1,2 @@
+-- Hibernate reserves blocks of ids (pooled-lo, allocationSize 50 on Customer); the increment must match it
+ALTER SEQUENCE customer_id_seq INCREMENT BY 50;
@@ -0,0 +1,3 @@
+-- bumped by every UPDATE of a customer; backs the ETag of GET /api/v1/customers/{id}
+ALTER TABLE customer
+    ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
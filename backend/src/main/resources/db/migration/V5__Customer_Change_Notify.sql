@@ -0,0 +1,20 @@
+-- Tells every API node which customer changed so that it can drop its cached copy (see CustomerChangeListener).
+-- Inserts are not announced: nodes never cache a customer that did not exist. A TRUNCATE announces '*'.
+CREATE FUNCTION notify_customer_change() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'TRUNCATE' THEN
+        PERFORM pg_notify('customer_changes', '*');
+    ELSE
+        PERFORM pg_notify('customer_changes', OLD.id::text);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER customer_change_notify
+    AFTER UPDATE OR DELETE ON customer
+    FOR EACH ROW EXECUTE FUNCTION notify_customer_change();
+
+CREATE TRIGGER customer_truncate_notify
+    AFTER TRUNCATE ON customer
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_customer_change();
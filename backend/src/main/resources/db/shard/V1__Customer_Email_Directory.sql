@@ -0,0 +1,6 @@
+-- Which customer holds each email that hashes to this shard, wherever that customer lives (see ShardedCustomerDAO).
+-- Applied to shards only, with its own history table, after the schema from db/migration.
+CREATE TABLE customer_email (
+    email TEXT PRIMARY KEY,
+    customer_id BIGINT NOT NULL
+);
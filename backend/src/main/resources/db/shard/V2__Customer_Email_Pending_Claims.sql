@@ -0,0 +1,3 @@
+-- Set while the claiming customer's email change is in flight and cleared once it has been written,
+-- so a claim is only taken over once provably abandoned (see ShardedCustomerDAO.claimEmail).
+ALTER TABLE customer_email ADD COLUMN claimed_at TIMESTAMPTZ;
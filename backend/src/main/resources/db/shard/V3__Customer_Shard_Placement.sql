@@ -0,0 +1,7 @@
+-- Which shard of how many this database is, recorded on first startup and checked on every one after,
+-- since customers are placed by that and never moved (see ShardRing). Holds at most one row.
+CREATE TABLE customer_shard (
+    placed BOOLEAN PRIMARY KEY DEFAULT TRUE CHECK (placed),
+    shard INT NOT NULL,
+    shards INT NOT NULL
+);
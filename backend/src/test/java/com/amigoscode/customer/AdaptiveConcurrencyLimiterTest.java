@@ -0,0 +1,128 @@
+package com.amigoscode.customer;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long MILLIS = Duration.ofMillis(1).toNanos();
+
+    @Test
+    void callsBeyondTheLimitAreTurnedAwayAfterWaiting() throws InterruptedException {
+        //Given
+        AdaptiveConcurrencyLimiter underTest = new AdaptiveConcurrencyLimiter(2, 1, 10);
+        underTest.tryAcquire(0);
+        underTest.tryAcquire(0);
+
+        //When
+        long start = System.nanoTime();
+        boolean admitted = underTest.tryAcquire(20 * MILLIS);
+
+        //Then
+        assertThat(admitted).isFalse();
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(20 * MILLIS);
+        assertThat(underTest.inFlight()).isEqualTo(2);
+    }
+
+    @Test
+    void waitingCallIsAdmittedWhenAnotherFinishes() throws InterruptedException {
+        //Given
+        AdaptiveConcurrencyLimiter underTest = new AdaptiveConcurrencyLimiter(1, 1, 10);
+        underTest.tryAcquire(0);
+        Thread.ofVirtual().start(() -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            underTest.releaseIgnored();
+        });
+
+        //When
+        boolean admitted = underTest.tryAcquire(Duration.ofSeconds(10).toNanos());
+
+        //Then
+        assertThat(admitted).isTrue();
+        assertThat(underTest.inFlight()).isEqualTo(1);
+    }
+
+    @Test
+    void limitGrowsWhileLatencyStaysAtItsBaseline() throws InterruptedException {
+        //Given
+        AdaptiveConcurrencyLimiter underTest = new AdaptiveConcurrencyLimiter(4, 1, 20);
+
+        //When
+        for (int i = 0; i < 10; i++) {
+            runConcurrently(underTest, underTest.limit(), 5 * MILLIS);
+        }
+
+        //Then
+        assertThat(underTest.limit()).isEqualTo(20);
+    }
+
+    @Test
+    void limitShrinksOnceLatencyShowsQueueing() throws InterruptedException {
+        //Given
+        AdaptiveConcurrencyLimiter underTest = new AdaptiveConcurrencyLimiter(20, 1, 20);
+        runConcurrently(underTest, 1, 5 * MILLIS);
+
+        //When
+        for (int i = 0; i < 10; i++) {
+            runConcurrently(underTest, underTest.limit(), 50 * MILLIS);
+        }
+
+        //Then
+        assertThat(underTest.limit()).isLessThan(20);
+    }
+
+    @Test
+    void limitDoesNotGrowWhileMostOfItIsUnused() throws InterruptedException {
+        //Given
+        AdaptiveConcurrencyLimiter underTest = new AdaptiveConcurrencyLimiter(4, 1, 20);
+
+        //When
+        for (int i = 0; i < 10; i++) {
+            runConcurrently(underTest, 1, 5 * MILLIS);
+        }
+
+        //Then
+        assertThat(underTest.limit()).isEqualTo(4);
+    }
+
+    @Test
+    void droppedCallsShrinkTheLimitDownToTheMinimum() throws InterruptedException {
+        //Given
+        AdaptiveConcurrencyLimiter underTest = new AdaptiveConcurrencyLimiter(3, 2, 10);
+
+        //When
+        for (int i = 0; i < 5; i++) {
+            underTest.tryAcquire(0);
+            underTest.releaseDropped();
+        }
+
+        //Then
+        assertThat(underTest.limit()).isEqualTo(2);
+        assertThat(underTest.inFlight()).isZero();
+    }
+
+    @Test
+    void rejectsInconsistentLimits() {
+        assertThatIllegalArgumentException().isThrownBy(() -> new AdaptiveConcurrencyLimiter(5, 1, 4));
+        assertThatIllegalArgumentException().isThrownBy(() -> new AdaptiveConcurrencyLimiter(1, 0, 4));
+    }
+
+    // admits calls until the given number are in flight, then completes them all with the given latency
+    private static void runConcurrently(AdaptiveConcurrencyLimiter limiter, int calls, long rttNanos)
+            throws InterruptedException {
+        for (int i = 0; i < calls; i++) {
+            assertThat(limiter.tryAcquire(0)).isTrue();
+        }
+        for (int i = 0; i < calls; i++) {
+            limiter.release(rttNanos);
+        }
+    }
+}
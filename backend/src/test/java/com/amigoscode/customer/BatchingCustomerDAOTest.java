@@ -0,0 +1,133 @@
+package com.amigoscode.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class BatchingCustomerDAOTest {
+
+    @Mock
+    private CustomerDAO delegate;
+    private AutoCloseable autoCloseable;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        autoCloseable = MockitoAnnotations.openMocks(this);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        executor.shutdownNow();
+        autoCloseable.close();
+    }
+
+    @Test
+    void concurrentRegistrationsShareOneInsertAndGetTheirOwnOutcome() throws Exception {
+        //Given
+        BatchingCustomerDAO underTest = batching(true, Duration.ofSeconds(10), 4);
+        Mockito.when(delegate.insertCustomers(Mockito.anyList())).thenAnswer(invocation -> {
+            List<Customer> customers = invocation.getArgument(0);
+            return customers.stream()
+                    .map(customer -> customer.getEmail().equals("taken@test.com")
+                            ? Optional.<Long>empty()
+                            : Optional.of((long) customer.getAge()))
+                    .toList();
+        });
+
+        //When
+        List<Future<Optional<Long>>> registrations = new ArrayList<>();
+        for (int age = 1; age <= 3; age++) {
+            registrations.add(register(underTest, new Customer("alex", "alex" + age + "@test.com", age)));
+        }
+        registrations.add(register(underTest, new Customer("sam", "taken@test.com", 40)));
+
+        //Then
+        assertThat(registrations.get(0).get()).contains(1L);
+        assertThat(registrations.get(1).get()).contains(2L);
+        assertThat(registrations.get(2).get()).contains(3L);
+        assertThat(registrations.get(3).get()).isEmpty();
+        ArgumentCaptor<List<Customer>> batch = ArgumentCaptor.captor();
+        Mockito.verify(delegate, Mockito.times(1)).insertCustomers(batch.capture());
+        assertThat(batch.getValue()).hasSize(4);
+        Mockito.verify(delegate, Mockito.never()).insertCustomerIfAbsent(Mockito.any());
+    }
+
+    @Test
+    void loneRegistrationIsInsertedOnceMaxDelayHasPassed() {
+        //Given
+        BatchingCustomerDAO underTest = batching(true, Duration.ofMillis(5), 100);
+        Mockito.when(delegate.insertCustomers(Mockito.anyList())).thenReturn(List.of(Optional.of(1L)));
+
+        //When
+        Optional<Long> actual = underTest.insertCustomerIfAbsent(new Customer("alex", "alex@test.com", 30));
+
+        //Then
+        assertThat(actual).contains(1L);
+    }
+
+    @Test
+    void invalidRegistrationFailsOnlyItsOwnCaller() throws Exception {
+        //Given
+        BatchingCustomerDAO underTest = batching(true, Duration.ofSeconds(10), 2);
+        Customer valid = new Customer("alex", "alex@test.com", 30);
+        Customer invalid = new Customer("sam", "sam@test.com", -1);
+        Mockito.when(delegate.insertCustomers(Mockito.anyList()))
+                .thenThrow(new DataIntegrityViolationException("violates check constraint"));
+        Mockito.when(delegate.insertCustomerIfAbsent(valid)).thenReturn(Optional.of(1L));
+        Mockito.when(delegate.insertCustomerIfAbsent(invalid))
+                .thenThrow(new DataIntegrityViolationException("violates check constraint"));
+
+        //When
+        Future<Optional<Long>> first = register(underTest, valid);
+        Future<Optional<Long>> second = register(underTest, invalid);
+
+        //Then
+        assertThat(first.get()).contains(1L);
+        assertThatExceptionOfType(ExecutionException.class)
+                .isThrownBy(second::get)
+                .withCauseInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    @Test
+    void disabledBatchingInsertsEachRegistrationAlone() {
+        //Given
+        BatchingCustomerDAO underTest = batching(false, Duration.ofSeconds(10), 100);
+        Customer customer = new Customer("alex", "alex@test.com", 30);
+        Mockito.when(delegate.insertCustomerIfAbsent(customer)).thenReturn(Optional.of(1L));
+
+        //When
+        Optional<Long> actual = underTest.insertCustomerIfAbsent(customer);
+
+        //Then
+        assertThat(actual).contains(1L);
+        Mockito.verify(delegate, Mockito.never()).insertCustomers(Mockito.anyList());
+    }
+
+    private BatchingCustomerDAO batching(boolean enabled, Duration maxDelay, int maxSize) {
+        return new BatchingCustomerDAO(delegate, Optional.empty(), new SimpleMeterRegistry(), enabled, maxDelay, maxSize);
+    }
+
+    private Future<Optional<Long>> register(BatchingCustomerDAO underTest, Customer customer) {
+        return executor.submit(() -> underTest.insertCustomerIfAbsent(customer));
+    }
+}
@@ -0,0 +1,246 @@
+package com.amigoscode.customer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachingCustomerDAOTest {
+
+    @Mock
+    private CustomerDAO delegate;
+    private AutoCloseable autoCloseable;
+    private CachingCustomerDAO underTest;
+
+    @BeforeEach
+    void setUp() {
+        autoCloseable = MockitoAnnotations.openMocks(this);
+        underTest = new CachingCustomerDAO(delegate, 100, Duration.ofMinutes(10));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        autoCloseable.close();
+    }
+
+    @Test
+    void selectCustomerByIdIsServedFromCache() {
+        //Given
+        Mockito.when(delegate.selectCustomerById(1L)).thenReturn(Optional.of(new Customer(1L, "alex", "alex@test.com", 30)));
+
+        //When
+        Optional<Customer> first = underTest.selectCustomerById(1L);
+        Optional<Customer> second = underTest.selectCustomerById(1L);
+
+        //Then
+        assertThat(first).isEqualTo(second).isNotEmpty();
+        Mockito.verify(delegate, Mockito.times(1)).selectCustomerById(1L);
+        assertThat(underTest.idCacheStats().hitCount()).isEqualTo(1);
+        assertThat(underTest.idCacheStats().missCount()).isEqualTo(1);
+    }
+
+    @Test
+    void selectCustomerByIdDoesNotCacheMisses() {
+        //Given
+        Mockito.when(delegate.selectCustomerById(1L)).thenReturn(Optional.empty());
+
+        //When
+        underTest.selectCustomerById(1L);
+        underTest.selectCustomerById(1L);
+
+        //Then
+        Mockito.verify(delegate, Mockito.times(2)).selectCustomerById(1L);
+    }
+
+    @Test
+    void cachedCustomerCannotBeMutatedByCallers() {
+        //Given
+        Mockito.when(delegate.selectCustomerById(1L)).thenReturn(Optional.of(new Customer(1L, "alex", "alex@test.com", 30)));
+
+        //When
+        underTest.selectCustomerById(1L).get().setName("changed");
+
+        //Then
+        assertThat(underTest.selectCustomerById(1L).get().getName()).isEqualTo("alex");
+    }
+
+    @Test
+    void selectCustomerByEmailIsServedFromCache() {
+        //Given
+        Mockito.when(delegate.selectCustomerByEmail("alex@test.com")).thenReturn(Optional.of(new Customer(1L, "alex", "alex@test.com", 30)));
+        Mockito.when(delegate.selectCustomerById(1L)).thenReturn(Optional.of(new Customer(1L, "alex", "alex@test.com", 30)));
+
+        //When
+        underTest.selectCustomerByEmail("alex@test.com");
+        Optional<Customer> result = underTest.selectCustomerByEmail("alex@test.com");
+
+        //Then
+        assertThat(result.get().getId()).isEqualTo(1L);
+        Mockito.verify(delegate, Mockito.times(1)).selectCustomerByEmail("alex@test.com");
+        Mockito.verify(delegate, Mockito.times(1)).selectCustomerById(1L);
+    }
+
+    @Test
+    void invalidationDuringEmailLookupIsNotUndone() {
+        //Given
+        Mockito.when(delegate.selectCustomerByEmail("alex@test.com")).thenAnswer(invocation -> {
+            // another node renames the customer and its notification arrives while the old row is being read
+            underTest.invalidate(1L);
+            return Optional.of(new Customer(1L, "alex", "alex@test.com", 30));
+        });
+        Mockito.when(delegate.selectCustomerById(1L)).thenReturn(Optional.of(new Customer(1L, "sam", "alex@test.com", 30)));
+
+        //When
+        Optional<Customer> result = underTest.selectCustomerByEmail("alex@test.com");
+
+        //Then
+        assertThat(result.get().getName()).isEqualTo("sam");
+        assertThat(underTest.selectCustomerById(1L).get().getName()).isEqualTo("sam");
+    }
+
+    @Test
+    void selectCustomersByIdsLoadsOnlyUncachedCustomersInOneCall() {
+        //Given
+        Mockito.when(delegate.selectCustomerById(1L)).thenReturn(Optional.of(new Customer(1L, "alex", "alex@test.com", 30)));
+        Mockito.when(delegate.selectCustomersByIds(List.of(2L, 3L))).thenReturn(List.of(new Customer(2L, "sam", "sam@test.com", 31)));
+        underTest.selectCustomerById(1L);
+
+        //When
+        List<Customer> customers = underTest.selectCustomersByIds(List.of(1L, 2L, 3L));
+        Optional<Customer> cached = underTest.selectCustomerById(2L);
+
+        //Then
+        assertThat(customers).extracting(Customer::getName).containsExactlyInAnyOrder("alex", "sam");
+        assertThat(cached.get().getName()).isEqualTo("sam");
+        Mockito.verify(delegate).selectCustomersByIds(List.of(2L, 3L));
+        Mockito.verify(delegate, Mockito.never()).selectCustomerById(2L);
+    }
+
+    @Test
+    void updateCustomerInvalidatesCachedEntries() {
+        //Given
+        Mockito.when(delegate.selectCustomerById(1L))
+                .thenReturn(Optional.of(new Customer(1L, "alex", "alex@test.com", 30)))
+                .thenReturn(Optional.of(new Customer(1L, "alex", "new@test.com", 30)));
+        Mockito.when(delegate.selectCustomerByEmail("alex@test.com")).thenReturn(Optional.empty());
+        underTest.selectCustomerByEmail("alex@test.com");
+        underTest.selectCustomerById(1L);
+
+        //When
+        underTest.updateCustomer(new Customer(1L, "alex", "new@test.com", 30));
+
+        //Then
+        assertThat(underTest.selectCustomerById(1L).get().getEmail()).isEqualTo("new@test.com");
+        assertThat(underTest.selectCustomerByEmail("alex@test.com")).isEmpty();
+        Mockito.verify(delegate, Mockito.times(2)).selectCustomerById(1L);
+    }
+
+    @Test
+    void deleteCustomerByIdInvalidatesCachedEntry() {
+        //Given
+        Mockito.when(delegate.selectCustomerById(1L))
+                .thenReturn(Optional.of(new Customer(1L, "alex", "alex@test.com", 30)))
+                .thenReturn(Optional.empty());
+        Mockito.when(delegate.deleteCustomerById(1L)).thenReturn(true);
+        underTest.selectCustomerById(1L);
+
+        //When
+        assertThat(underTest.deleteCustomerById(1L)).isTrue();
+
+        //Then
+        assertThat(underTest.selectCustomerById(1L)).isEmpty();
+        Mockito.verify(delegate).deleteCustomerById(1L);
+    }
+
+    @Test
+    void invalidateDropsOnlyThatCustomer() {
+        //Given
+        Mockito.when(delegate.selectCustomerById(Mockito.anyLong()))
+                .thenAnswer(invocation -> Optional.of(new Customer(invocation.getArgument(0), "alex", "alex@test.com", 30)));
+        underTest.selectCustomerById(1L);
+        underTest.selectCustomerById(2L);
+
+        //When
+        underTest.invalidate(1L);
+        underTest.selectCustomerById(1L);
+        underTest.selectCustomerById(2L);
+
+        //Then
+        Mockito.verify(delegate, Mockito.times(2)).selectCustomerById(1L);
+        Mockito.verify(delegate, Mockito.times(1)).selectCustomerById(2L);
+    }
+
+    @Test
+    void invalidateAllDropsEveryEntry() {
+        //Given
+        Mockito.when(delegate.selectCustomerByEmail("alex@test.com")).thenReturn(Optional.of(new Customer(1L, "alex", "alex@test.com", 30)));
+        Mockito.when(delegate.selectCustomerById(1L)).thenReturn(Optional.of(new Customer(1L, "alex", "alex@test.com", 30)));
+        underTest.selectCustomerByEmail("alex@test.com");
+
+        //When
+        underTest.invalidateAll();
+        underTest.selectCustomerByEmail("alex@test.com");
+        underTest.selectCustomerById(1L);
+
+        //Then
+        Mockito.verify(delegate, Mockito.times(2)).selectCustomerByEmail("alex@test.com");
+        // once for each email lookup, after which the lookup by id is served from the cache
+        Mockito.verify(delegate, Mockito.times(2)).selectCustomerById(1L);
+    }
+
+    @Test
+    void loadingCustomerDoesNotPinVirtualThreads() throws Exception {
+        //Given
+        Mockito.when(delegate.selectCustomerById(Mockito.anyLong())).thenAnswer(invocation -> {
+            Thread.sleep(50);
+            return Optional.of(new Customer(invocation.getArgument(0), "alex", "alex@test.com", 30));
+        });
+        Path events = Files.createTempFile("virtual-thread-pinned", ".jfr");
+
+        //When
+        try (Recording recording = new Recording()) {
+            recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ofMillis(10)).withStackTrace();
+            recording.start();
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (long id = 1; id <= 20; id++) {
+                    long customerId = id % 4 + 1;
+                    executor.submit(() -> underTest.selectCustomerById(customerId));
+                }
+            }
+            recording.stop();
+            recording.dump(events);
+        }
+
+        //Then
+        assertThat(RecordingFile.readAllEvents(events)).isEmpty();
+        Mockito.verify(delegate, Mockito.times(4)).selectCustomerById(Mockito.anyLong());
+        Files.delete(events);
+    }
+
+    @Test
+    void insertCustomerDelegates() {
+        //Given
+        Customer customer = new Customer("alex", "alex@test.com", 30);
+
+        //When
+        underTest.insertCustomer(customer);
+
+        //Then
+        Mockito.verify(delegate).insertCustomer(customer);
+    }
+}
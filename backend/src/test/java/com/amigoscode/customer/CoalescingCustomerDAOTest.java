@@ -0,0 +1,145 @@
+package com.amigoscode.customer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class CoalescingCustomerDAOTest {
+
+    @Mock
+    private CustomerDAO delegate;
+    private AutoCloseable autoCloseable;
+    private CoalescingCustomerDAO underTest;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        autoCloseable = MockitoAnnotations.openMocks(this);
+        underTest = new CoalescingCustomerDAO(delegate);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        executor.shutdownNow();
+        autoCloseable.close();
+    }
+
+    @Test
+    void concurrentLookupsOfTheSameIdShareOneQuery() throws Exception {
+        //Given
+        CountDownLatch release = blockLookupsById(Optional.of(new Customer(1L, "alex", "alex@test.com", 30)));
+
+        //When
+        List<Future<Optional<Customer>>> lookups = lookUpConcurrently(1L, 10);
+        release.countDown();
+
+        //Then
+        List<Customer> customers = new ArrayList<>();
+        for (Future<Optional<Customer>> lookup : lookups) {
+            customers.add(lookup.get().orElseThrow());
+        }
+        Mockito.verify(delegate, Mockito.times(1)).selectCustomerById(1L);
+        assertThat(customers).extracting(Customer::getName).containsOnly("alex");
+        customers.get(0).setName("sam");
+        assertThat(customers.subList(1, customers.size())).extracting(Customer::getName).containsOnly("alex");
+    }
+
+    @Test
+    void failedQueryFailsEveryWaiterAndIsNotReused() throws Exception {
+        //Given
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(delegate.selectCustomerById(1L))
+                .thenAnswer(invocation -> {
+                    release.await();
+                    throw new QueryTimeoutException("canceling statement due to statement timeout");
+                })
+                .thenReturn(Optional.of(new Customer(1L, "alex", "alex@test.com", 30)));
+
+        //When
+        List<Future<Optional<Customer>>> lookups = lookUpConcurrently(1L, 10);
+        release.countDown();
+
+        //Then
+        for (Future<Optional<Customer>> lookup : lookups) {
+            assertThatExceptionOfType(ExecutionException.class)
+                    .isThrownBy(lookup::get)
+                    .withCauseInstanceOf(QueryTimeoutException.class);
+        }
+        assertThat(underTest.selectCustomerById(1L)).isPresent();
+        Mockito.verify(delegate, Mockito.times(2)).selectCustomerById(1L);
+    }
+
+    @Test
+    void lookupsAfterAnUpdateDoNotJoinAQueryStartedBeforeIt() throws Exception {
+        //Given
+        CountDownLatch release = blockLookupsById(Optional.of(new Customer(1L, "alex", "alex@test.com", 30)));
+        List<Future<Optional<Customer>>> before = lookUpConcurrently(1L, 1);
+
+        //When
+        underTest.updateCustomerIfChanged(new Customer(1L, "sam", "alex@test.com", 30));
+        List<Future<Optional<Customer>>> after = lookUpConcurrently(1L, 1);
+        release.countDown();
+
+        //Then
+        before.get(0).get();
+        after.get(0).get();
+        Mockito.verify(delegate, Mockito.times(2)).selectCustomerById(1L);
+    }
+
+    @Test
+    void lookupsOfDifferentIdsAreNotShared() {
+        //Given
+        Mockito.when(delegate.selectCustomerById(1L)).thenReturn(Optional.of(new Customer(1L, "alex", "alex@test.com", 30)));
+        Mockito.when(delegate.selectCustomerById(2L)).thenReturn(Optional.empty());
+
+        //When
+        Optional<Customer> first = underTest.selectCustomerById(1L);
+        Optional<Customer> second = underTest.selectCustomerById(2L);
+
+        //Then
+        assertThat(first).isPresent();
+        assertThat(second).isEmpty();
+    }
+
+    // the first lookup holds its query open until the latch is released, with the others queued behind it
+    private CountDownLatch blockLookupsById(Optional<Customer> customer) {
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(delegate.selectCustomerById(Mockito.anyLong())).thenAnswer(invocation -> {
+            release.await();
+            return customer;
+        });
+        return release;
+    }
+
+    private List<Future<Optional<Customer>>> lookUpConcurrently(Long id, int callers) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(callers);
+        List<Future<Optional<Customer>>> lookups = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            lookups.add(executor.submit(() -> {
+                started.countDown();
+                return underTest.selectCustomerById(id);
+            }));
+        }
+        started.await();
+        // give every caller time to reach the in-flight query before it is released
+        Thread.sleep(100);
+        return lookups;
+    }
+}
@@ -0,0 +1,137 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class CustomerAdmissionAspectTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private CustomerJDBCDataAccessService delegate;
+    private CustomerDAO underTest;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        delegate = Mockito.mock(CustomerJDBCDataAccessService.class);
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(delegate);
+        proxyFactory.addAspect(new CustomerAdmissionAspect(meterRegistry, Duration.ofMillis(50), Duration.ofSeconds(2),
+                1, 1, 1, 3, 1, 3, 1));
+        underTest = proxyFactory.getProxy();
+    }
+
+    @Test
+    void readsBeyondTheirBudgetAreShedWhileWritesGoAhead() throws InterruptedException {
+        //Given
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        Mockito.when(delegate.selectCustomerById(1L)).thenAnswer(invocation -> {
+            started.countDown();
+            finish.await();
+            return Optional.empty();
+        });
+        Thread slowRead = Thread.ofVirtual().start(() -> underTest.selectCustomerById(1L));
+        started.await();
+
+        //When
+        ServiceUnavailableException shed = null;
+        try {
+            underTest.selectCustomerById(2L);
+        } catch (ServiceUnavailableException e) {
+            shed = e;
+        }
+        underTest.deleteCustomerById(3L);
+        finish.countDown();
+        slowRead.join();
+
+        //Then
+        assertThat(shed).isNotNull();
+        assertThat(shed.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("2");
+        assertThat(meterRegistry.get("customer.admission.shed").tags("budget", "reads").counter().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("customer.admission.shed").tags("budget", "writes").counter().count())
+                .isZero();
+        Mockito.verify(delegate).deleteCustomerById(3L);
+        Mockito.verify(delegate, Mockito.never()).selectCustomerById(2L);
+    }
+
+    @Test
+    void streamedExportsHaveTheirOwnBudgetAndLeaveReadsAlone() throws InterruptedException {
+        //Given
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        Mockito.doAnswer(invocation -> {
+            started.countDown();
+            finish.await();
+            return null;
+        }).when(delegate).forEachCustomer(Mockito.any());
+        Thread slowExport = Thread.ofVirtual().start(() -> underTest.forEachCustomer(customer -> {
+        }));
+        started.await();
+
+        //When
+        underTest.selectCustomerById(1L);
+        assertThatExceptionOfType(ServiceUnavailableException.class)
+                .isThrownBy(() -> underTest.forEachCustomer(customer -> {
+                }));
+        finish.countDown();
+        slowExport.join();
+
+        //Then
+        Mockito.verify(delegate).selectCustomerById(1L);
+        assertThat(meterRegistry.get("customer.admission.shed").tags("budget", "exports").counter().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("customer.admission.shed").tags("budget", "reads").counter().count())
+                .isZero();
+    }
+
+    @Test
+    void shardedCustomerDaoCallsAreAdmitted() throws Exception {
+        //Given
+        ShardedCustomerDAO sharded = Mockito.mock(ShardedCustomerDAO.class);
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(sharded);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAspect(new CustomerAdmissionAspect(meterRegistry, Duration.ofMillis(50), Duration.ofSeconds(2),
+                1, 1, 1, 3, 1, 3, 1));
+        ShardedCustomerDAO proxy = proxyFactory.getProxy();
+
+        //When
+        proxy.selectCustomerById(1L);
+        proxy.deleteCustomerById(1L);
+        proxy.close();
+
+        //Then
+        assertThat(meterRegistry.get("customer.admission.wait").tags("budget", "reads").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("customer.admission.wait").tags("budget", "writes").timer().count()).isEqualTo(1);
+        Mockito.verify(sharded).close();
+    }
+
+    @Test
+    void connectionTimeoutsShrinkTheBudget() {
+        //Given
+        Mockito.when(delegate.deleteCustomerById(1L))
+                .thenThrow(new CannotGetJdbcConnectionException("Connection is not available"));
+
+        //When
+        assertThatExceptionOfType(CannotGetJdbcConnectionException.class)
+                .isThrownBy(() -> underTest.deleteCustomerById(1L));
+
+        //Then
+        assertThat(meterRegistry.get("customer.admission.limit").tags("budget", "writes").gauge().value())
+                .isEqualTo(2);
+        assertThat(meterRegistry.get("customer.admission.in-flight").tags("budget", "writes").gauge().value())
+                .isZero();
+    }
+}
@@ -0,0 +1,106 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.AbstractTestContainers;
+import com.amigoscode.main;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// two nodes sharing one database, each with its own cache
+class CustomerChangeListenerTest extends AbstractTestContainers {
+
+    private ConfigurableApplicationContext nodeA;
+    private ConfigurableApplicationContext nodeB;
+
+    @BeforeEach
+    void setUp() {
+        nodeA = startNode();
+        nodeB = startNode();
+        awaitListeners(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.close();
+        nodeB.close();
+    }
+
+    @Test
+    void updateOnOneNodeInvalidatesTheOtherNodesCache() {
+        //Given
+        CachingCustomerDAO cacheA = nodeA.getBean(CachingCustomerDAO.class);
+        CachingCustomerDAO cacheB = nodeB.getBean(CachingCustomerDAO.class);
+        String email = UUID.randomUUID() + "@test.com";
+        Long id = cacheB.insertCustomerIfAbsent(new Customer("alex", email, 30)).get();
+        assertThat(cacheA.selectCustomerById(id).get().getName()).isEqualTo("alex");
+
+        //When
+        cacheB.updateCustomerIfChanged(new Customer(id, "sam", email, 30));
+
+        //Then
+        awaitName(cacheA, id, "sam");
+    }
+
+    @Test
+    void cacheIsFlushedWhenTheListenerReconnects() {
+        //Given
+        CachingCustomerDAO cacheA = nodeA.getBean(CachingCustomerDAO.class);
+        String email = UUID.randomUUID() + "@test.com";
+        Long id = cacheA.insertCustomerIfAbsent(new Customer("alex", email, 30)).get();
+        assertThat(cacheA.selectCustomerById(id).get().getName()).isEqualTo("alex");
+
+        //When
+        getJdbcTemplate().query("SELECT pg_terminate_backend(pid, 5000) FROM pg_stat_activity WHERE application_name = ?",
+                rs -> {}, CustomerChangeListener.APPLICATION_NAME);
+        getJdbcTemplate().update("UPDATE customer SET name = 'sam' WHERE id = ?", id);
+
+        //Then
+        assertThat(cacheA.selectCustomerById(id).get().getName()).isEqualTo("alex");
+        awaitName(cacheA, id, "sam");
+    }
+
+    private static void awaitListeners(int nodes) {
+        var sql = """
+                SELECT count(*) FROM pg_stat_activity WHERE application_name = ? AND query LIKE 'LISTEN%'
+                """;
+        Instant deadline = Instant.now().plus(Duration.ofSeconds(10));
+        while (getJdbcTemplate().queryForObject(sql, Long.class, CustomerChangeListener.APPLICATION_NAME) < nodes
+                && Instant.now().isBefore(deadline)) {
+            pause();
+        }
+    }
+
+    private static void awaitName(CachingCustomerDAO cache, Long id, String name) {
+        Instant deadline = Instant.now().plus(Duration.ofSeconds(10));
+        while (!cache.selectCustomerById(id).get().getName().equals(name) && Instant.now().isBefore(deadline)) {
+            pause();
+        }
+        assertThat(cache.selectCustomerById(id).get().getName()).isEqualTo(name);
+    }
+
+    private static void pause() {
+        try {
+            Thread.sleep(20);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ConfigurableApplicationContext startNode() {
+        return new SpringApplicationBuilder(main.class).run(
+                "--spring.main.web-application-type=none",
+                "--spring.datasource.url=" + postgreSQLContainer.getJdbcUrl(),
+                "--spring.datasource.username=" + postgreSQLContainer.getUsername(),
+                "--spring.datasource.password=" + postgreSQLContainer.getPassword(),
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=warn");
+    }
+}
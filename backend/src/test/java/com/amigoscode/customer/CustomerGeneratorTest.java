@@ -0,0 +1,74 @@
+package com.amigoscode.customer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerGeneratorTest {
+
+    @Mock
+    private CustomerImportService customerImportService;
+    private AutoCloseable autoCloseable;
+    private CustomerGenerator underTest;
+
+    @BeforeEach
+    void setUp() {
+        autoCloseable = MockitoAnnotations.openMocks(this);
+        underTest = new CustomerGenerator(customerImportService);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        autoCloseable.close();
+    }
+
+    @Test
+    void generateLoadsEachPartitionAndSumsTheResults() {
+        //Given
+        long count = 2L * CustomerGenerator.PARTITION_SIZE + 1;
+        Mockito.when(customerImportService.importCsv(Mockito.any()))
+                .thenReturn(new CustomerImportResult(90, 10, 0));
+
+        //When
+        CustomerImportResult result = underTest.generate(count, 42, 2);
+
+        //Then
+        Mockito.verify(customerImportService, Mockito.times(3)).importCsv(Mockito.any());
+        assertThat(result.imported()).isEqualTo(270);
+        assertThat(result.rejected()).isEqualTo(30);
+    }
+
+    @Test
+    void generatedCsvIsReproducibleWithUniqueEmails() throws IOException {
+        //Given
+        //When
+        List<String> lines = readLines(new GeneratedCustomerCsvInputStream(42, 1_000, 3_000));
+        List<String> again = readLines(new GeneratedCustomerCsvInputStream(42, 1_000, 3_000));
+        List<String> otherSeed = readLines(new GeneratedCustomerCsvInputStream(43, 1_000, 3_000));
+
+        //Then
+        assertThat(lines).hasSize(2_001).first().isEqualTo("name,email,age");
+        assertThat(again).isEqualTo(lines);
+        assertThat(otherSeed).isNotEqualTo(lines);
+        List<String> emails = lines.stream().skip(1).map(line -> line.split(",")[1]).toList();
+        assertThat(emails).doesNotHaveDuplicates().allMatch(email -> email.matches("[a-z0-9.]+\\.\\d+@[a-z.]+"));
+        assertThat(lines.stream().skip(1).map(line -> Integer.parseInt(line.substring(line.lastIndexOf(',') + 1))))
+                .allMatch(age -> age >= 16 && age < 99);
+    }
+
+    private static List<String> readLines(InputStream csv) throws IOException {
+        try (csv) {
+            return new String(csv.readAllBytes(), StandardCharsets.UTF_8).lines().toList();
+        }
+    }
+}
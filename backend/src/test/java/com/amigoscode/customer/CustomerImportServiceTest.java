@@ -0,0 +1,77 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.AbstractTestContainers;
+import com.amigoscode.exception.NotImplementedException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class CustomerImportServiceTest extends AbstractTestContainers {
+
+    private CustomerImportService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerImportService(getJdbcTemplate(), Optional.empty());
+    }
+
+    @Test
+    void importCsvRejectsInvalidAndDuplicateRows() {
+        //Given
+        String prefix = UUID.randomUUID().toString();
+        String csv = """
+                name,email,age
+                ann,%1$s-ann@test.com,31
+                bob,%1$s-bob@test.com,not-a-number
+                ,%1$s-nameless@test.com,40
+                ann again,%1$s-ann@test.com,32
+                """.formatted(prefix);
+
+        //When
+        CustomerImportResult result = underTest.importCsv(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+        //Then
+        assertThat(result.imported()).isEqualTo(1);
+        assertThat(result.rejected()).isEqualTo(3);
+    }
+
+    @Test
+    void importCsvIsRefusedWhileCustomersAreSharded() {
+        //Given
+        CustomerImportService sharded = new CustomerImportService(getJdbcTemplate(),
+                Optional.of(Mockito.mock(ShardedCustomerDAO.class)));
+        Long countBefore = getJdbcTemplate().queryForObject("SELECT count(*) FROM customer", Long.class);
+
+        //When
+        //Then
+        assertThatExceptionOfType(NotImplementedException.class)
+                .isThrownBy(() -> sharded.importCsv(new GeneratedCustomerCsvInputStream(42, 0, 10)));
+        assertThat(getJdbcTemplate().queryForObject("SELECT count(*) FROM customer", Long.class)).isEqualTo(countBefore);
+    }
+
+    @Test
+    void importCsvOfOneMillionRows() {
+        //Given
+        int rows = 1_000_000;
+        Long countBefore = getJdbcTemplate().queryForObject("SELECT count(*) FROM customer", Long.class);
+
+        //When
+        CustomerImportResult result = underTest.importCsv(new GeneratedCustomerCsvInputStream(42, 0, rows));
+
+        //Then
+        assertThat(result.imported()).isEqualTo(rows);
+        assertThat(result.rejected()).isZero();
+        Long countAfter = getJdbcTemplate().queryForObject("SELECT count(*) FROM customer", Long.class);
+        assertThat(countAfter - countBefore).isEqualTo(rows);
+        System.out.printf("importCsv: %d rows imported at %d rows/s%n", result.imported(), result.rowsPerSecond());
+    }
+}
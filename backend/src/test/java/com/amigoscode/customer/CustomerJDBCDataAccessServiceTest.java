@@ -5,9 +5,18 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.jdbc.core.JdbcTemplate;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
@@ -33,6 +42,87 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainers {
         assertThat(customers).isNotEmpty();
     }
 
+    @Test
+    void selectCustomersAfter() {
+        //Given
+        for (int i = 0; i < 5; i++) {
+            underTest.insertCustomer(new Customer("page", UUID.randomUUID() + "@test.com", 20 + i));
+        }
+        List<Customer> firstPage = underTest.selectCustomersAfter(0L, 3);
+
+        //When
+        List<Customer> secondPage = underTest.selectCustomersAfter(firstPage.get(2).getId(), 3);
+
+        //Then
+        assertThat(firstPage).hasSize(3);
+        assertThat(firstPage).extracting(Customer::getId).isSorted();
+        assertThat(secondPage).isNotEmpty();
+        assertThat(secondPage).extracting(Customer::getId).isSorted()
+                .allMatch(id -> id > firstPage.get(2).getId());
+    }
+
+    @Test
+    void forEachCustomerStreamsEveryRowInBoundedMemory() {
+        //Given
+        int rows = 50_000;
+        String prefix = UUID.randomUUID().toString();
+        getJdbcTemplate().update("""
+                INSERT INTO customer (name, email, age)
+                SELECT 'export', ? || '-' || g || '@test.com', 30 FROM generate_series(1, ?) g
+                """, prefix, rows);
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long heapBefore = liveHeap(memory);
+        List<Customer> materialised = underTest.selectAllCustomers();
+        long materialisedHeap = liveHeap(memory) - heapBefore;
+        assertThat(materialised).hasSizeGreaterThanOrEqualTo(rows);
+        materialised = null;
+        long heapBeforeStreaming = liveHeap(memory);
+        AtomicLong visited = new AtomicLong();
+        AtomicLong streamed = new AtomicLong();
+        AtomicLong peakHeapGrowth = new AtomicLong();
+        AtomicLong samplingNanos = new AtomicLong();
+
+        //When
+        long start = System.nanoTime();
+        underTest.forEachCustomer(customer -> {
+            if (customer.getEmail().startsWith(prefix)) {
+                streamed.incrementAndGet();
+            }
+            if (visited.incrementAndGet() % 10_000 == 0) {
+                long samplingStart = System.nanoTime();
+                peakHeapGrowth.accumulateAndGet(liveHeap(memory) - heapBeforeStreaming, Math::max);
+                samplingNanos.addAndGet(System.nanoTime() - samplingStart);
+            }
+        });
+        // the collections forced while sampling the heap are not part of streaming
+        long elapsedNanos = Math.max(System.nanoTime() - start - samplingNanos.get(), 1);
+
+        //Then
+        assertThat(streamed.get()).isEqualTo(rows);
+        assertThat(visited.get()).isGreaterThanOrEqualTo(rows);
+        // only a fetch of rows is held at a time, a small fraction of the whole table
+        assertThat(peakHeapGrowth.get()).isLessThan(materialisedHeap / 4);
+        System.out.printf("forEachCustomer: %d rows streamed at %d rows/s, peak heap growth %d KB of %d KB materialised%n",
+                visited.get(), visited.get() * TimeUnit.SECONDS.toNanos(1) / elapsedNanos,
+                peakHeapGrowth.get() / 1024, materialisedHeap / 1024);
+    }
+
+    @Test
+    void selectCustomersByIds() {
+        //Given
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ids.add(underTest.insertCustomerIfAbsent(new Customer("many", UUID.randomUUID() + "@test.com", 20 + i)).get());
+        }
+        ids.add(-1L);
+
+        //When
+        List<Customer> customers = underTest.selectCustomersByIds(ids);
+
+        //Then
+        assertThat(customers).extracting(Customer::getId).containsExactlyInAnyOrderElementsOf(ids.subList(0, 3));
+    }
+
     @Test
     void selectCustomerById() {
         //Given
@@ -100,6 +190,75 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainers {
 
     }
 
+    @Test
+    void insertCustomerIfAbsent() {
+        //Given
+        String email = UUID.randomUUID() + "@test.com";
+
+        //When
+        Optional<Long> first = underTest.insertCustomerIfAbsent(new Customer("first", email, 20));
+        Optional<Long> second = underTest.insertCustomerIfAbsent(new Customer("second", email, 30));
+
+        //Then
+        assertThat(first).isPresent();
+        assertThat(second).isEmpty();
+        assertThat(underTest.selectCustomerById(first.get()).get().getName()).isEqualTo("first");
+    }
+
+    @Test
+    void insertCustomerIfAbsentUnderConcurrency() throws Exception {
+        //Given
+        String email = UUID.randomUUID() + "@test.com";
+        int threads = 32;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Optional<Long>>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Customer customer = new Customer("racer-" + i, email, 20 + i);
+            results.add(executor.submit(() -> {
+                start.await();
+                return underTest.insertCustomerIfAbsent(customer);
+            }));
+        }
+
+        //When
+        start.countDown();
+        List<Optional<Long>> ids = new ArrayList<>();
+        for (Future<Optional<Long>> result : results) {
+            ids.add(result.get(30, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        //Then
+        assertThat(ids).filteredOn(Optional::isPresent).hasSize(1);
+        Long count = getJdbcTemplate().queryForObject("SELECT count(*) FROM customer WHERE email = ?", Long.class, email);
+        assertThat(count).isEqualTo(1);
+    }
+
+    @Test
+    void insertCustomersReportsDuplicatesPerItem() {
+        //Given
+        String existingEmail = UUID.randomUUID() + "@test.com";
+        String freshEmail = UUID.randomUUID() + "@test.com";
+        underTest.insertCustomer(new Customer("existing", existingEmail, 40));
+
+        //When
+        List<Optional<Long>> ids = underTest.insertCustomers(List.of(
+                new Customer("fresh", freshEmail, 20),
+                new Customer("existing", existingEmail, 30),
+                new Customer("repeated", freshEmail, 50)));
+
+        //Then
+        assertThat(ids).hasSize(3);
+        assertThat(ids.get(0)).isPresent();
+        assertThat(ids.get(1)).isEmpty();
+        assertThat(ids.get(2)).isEmpty();
+        Optional<Customer> result = underTest.selectCustomerById(ids.get(0).get());
+        assertThat(result).isNotEmpty();
+        assertThat(result.get().getEmail()).isEqualTo(freshEmail);
+        assertThat(result.get().getName()).isEqualTo("fresh");
+    }
+
     @Test
     void updateCustomer() {
         //Given
@@ -126,6 +285,54 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainers {
 
     }
 
+    @Test
+    void updateCustomerIfChanged() {
+        //Given
+        String email = UUID.randomUUID() + "@test.com";
+        Long id = underTest.insertCustomerIfAbsent(new Customer("mo", email, 31)).get();
+
+        //When
+        CustomerUpdateResult changed = underTest.updateCustomerIfChanged(new Customer(id, "bills", email, 31));
+        CustomerUpdateResult unchanged = underTest.updateCustomerIfChanged(new Customer(id, "bills", email, 31));
+        CustomerUpdateResult missing = underTest.updateCustomerIfChanged(new Customer(-1L, "bills", email, 31));
+
+        //Then
+        assertThat(changed).isEqualTo(CustomerUpdateResult.UPDATED);
+        assertThat(unchanged).isEqualTo(CustomerUpdateResult.UNCHANGED);
+        assertThat(missing).isEqualTo(CustomerUpdateResult.NOT_FOUND);
+        assertThat(underTest.selectCustomerById(id).get().getName()).isEqualTo("bills");
+    }
+
+    @Test
+    void updateCustomerIfChangedWithVersion() {
+        //Given
+        String email = UUID.randomUUID() + "@test.com";
+        Long id = underTest.insertCustomerIfAbsent(new Customer("mo", email, 31)).get();
+
+        //When
+        CustomerUpdateResult changed = underTest.updateCustomerIfChanged(new Customer(id, "bills", email, 31, 0L));
+        CustomerUpdateResult stale = underTest.updateCustomerIfChanged(new Customer(id, "alex", email, 31, 0L));
+        CustomerUpdateResult staleUnchanged = underTest.updateCustomerIfChanged(new Customer(id, "bills", email, 31, 0L));
+        CustomerUpdateResult unchanged = underTest.updateCustomerIfChanged(new Customer(id, "bills", email, 31, 1L));
+
+        //Then
+        assertThat(changed).isEqualTo(CustomerUpdateResult.UPDATED);
+        assertThat(stale).isEqualTo(CustomerUpdateResult.VERSION_CONFLICT);
+        assertThat(staleUnchanged).isEqualTo(CustomerUpdateResult.VERSION_CONFLICT);
+        assertThat(unchanged).isEqualTo(CustomerUpdateResult.UNCHANGED);
+        assertThat(underTest.selectCustomerById(id).get()).extracting(Customer::getName, Customer::getVersion)
+                .containsExactly("bills", 1L);
+    }
+
+    @Test
+    void deleteCustomerByIdWhenNotFound() {
+        //When
+        boolean deleted = underTest.deleteCustomerById(-1L);
+
+        //Then
+        assertThat(deleted).isFalse();
+    }
+
     @Test
     void deleteCustomerById() {
         //Given
@@ -144,4 +351,10 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainers {
         Optional<Customer> result = underTest.selectCustomerById(id.get());
         assertThat(result).isEmpty();
     }
-}
\ No newline at end of file
+
+    // the heap still referenced, after collecting the garbage that would otherwise blur it
+    private static long liveHeap(MemoryMXBean memory) {
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
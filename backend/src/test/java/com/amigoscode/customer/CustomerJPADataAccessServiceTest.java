@@ -1,16 +1,23 @@
 package com.amigoscode.customer;
 
+import org.hibernate.PropertyValueException;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 import static org.junit.jupiter.api.Assertions.*;
 
 class CustomerJPADataAccessServiceTest {
@@ -43,6 +50,16 @@ class CustomerJPADataAccessServiceTest {
         Mockito.verify(customerRepository, Mockito.times(1)).findAll();
     }
 
+    @Test
+    void selectCustomersAfter() {
+        //When
+        Mockito.when(customerRepository.findByIdGreaterThanOrderByIdAsc(5L, Limit.of(10))).thenReturn(List.of(new Customer()));
+        List<Customer> result = underTest.selectCustomersAfter(5L, 10);
+        //Then
+        assertThat(result).hasSize(1);
+        Mockito.verify(customerRepository, Mockito.times(1)).findByIdGreaterThanOrderByIdAsc(5L, Limit.of(10));
+    }
+
     @Test
     void selectCustomerById() {
         //When
@@ -53,6 +70,16 @@ class CustomerJPADataAccessServiceTest {
         Mockito.verify(customerRepository, Mockito.times(1)).findById(Mockito.anyLong());
     }
 
+    @Test
+    void selectCustomersByIds() {
+        //When
+        Mockito.when(customerRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(new Customer()));
+        List<Customer> result = underTest.selectCustomersByIds(List.of(1L, 2L));
+        //Then
+        assertThat(result).hasSize(1);
+        Mockito.verify(customerRepository, Mockito.times(1)).findAllById(List.of(1L, 2L));
+    }
+
     @Test
     void selectCustomerByEmail() {
         //When
@@ -70,18 +97,135 @@ class CustomerJPADataAccessServiceTest {
         Mockito.verify(customerRepository, Mockito.times(1)).save(Mockito.any(Customer.class));
     }
 
+    @Test
+    void insertCustomerIfAbsent() {
+        //Given
+        Mockito.when(customerRepository.saveAndFlush(Mockito.any(Customer.class)))
+                .thenReturn(new Customer(3L, "name", "email@test.com", 20));
+
+        //When
+        Optional<Long> result = underTest.insertCustomerIfAbsent(new Customer("name", "email@test.com", 20));
+
+        //Then
+        assertThat(result).contains(3L);
+    }
+
+    @Test
+    void insertCustomerIfAbsentWhenEmailTaken() {
+        //Given
+        Mockito.when(customerRepository.saveAndFlush(Mockito.any(Customer.class)))
+                .thenThrow(new DataIntegrityViolationException("could not execute statement",
+                        new ConstraintViolationException("duplicate key value violates unique constraint",
+                                new SQLException("duplicate key", "23505"), "unique_email_constraint")));
+
+        //When
+        Optional<Long> result = underTest.insertCustomerIfAbsent(new Customer("name", "email@test.com", 20));
+
+        //Then
+        assertThat(result).isEmpty();
+    }
+
+    @Test
+    void insertCustomerIfAbsentWithoutNameIsNotReportedAsDuplicate() {
+        //Given
+        Customer nameless = new Customer(null, "email@test.com", 20);
+        DataIntegrityViolationException notNull = new DataIntegrityViolationException("not-null property references a null value",
+                new PropertyValueException("not-null property references a null value", Customer.class.getName(), "name"));
+        Mockito.when(customerRepository.saveAndFlush(nameless)).thenThrow(notNull);
+
+        //When
+        //Then
+        assertThatExceptionOfType(DataIntegrityViolationException.class)
+                .isThrownBy(() -> underTest.insertCustomerIfAbsent(nameless))
+                .isSameAs(notNull);
+    }
+
+    @Test
+    void insertCustomerIfAbsentRethrowsOtherConstraintViolations() {
+        //Given
+        DataIntegrityViolationException checkFailed = new DataIntegrityViolationException("could not execute statement",
+                new ConstraintViolationException("violates not-null constraint",
+                        new SQLException("null value in column \"age\"", "23502"), null));
+        Mockito.when(customerRepository.saveAndFlush(Mockito.any(Customer.class))).thenThrow(checkFailed);
+
+        //When
+        //Then
+        assertThatExceptionOfType(DataIntegrityViolationException.class)
+                .isThrownBy(() -> underTest.insertCustomerIfAbsent(new Customer("name", "email@test.com", null)))
+                .isSameAs(checkFailed);
+    }
+
+    @Test
+    void insertCustomersSkipsExistingAndRepeatedEmails() {
+        //Given
+        Customer fresh = new Customer("fresh", "fresh@test.com", 20);
+        Customer existing = new Customer("existing", "existing@test.com", 30);
+        Customer repeated = new Customer("repeated", "fresh@test.com", 40);
+        Mockito.when(customerRepository.findByEmailIn(Mockito.anyCollection()))
+                .thenReturn(List.of(new Customer(1L, "existing", "existing@test.com", 30)));
+        Mockito.when(customerRepository.saveAll(Mockito.anyList())).thenAnswer(invocation -> {
+            List<Customer> saved = invocation.getArgument(0);
+            saved.forEach(customer -> customer.setId(2L));
+            return saved;
+        });
+
+        //When
+        List<Optional<Long>> result = underTest.insertCustomers(List.of(fresh, existing, repeated));
+
+        //Then
+        assertThat(result).containsExactly(Optional.of(2L), Optional.empty(), Optional.empty());
+        Mockito.verify(customerRepository, Mockito.times(1)).saveAll(List.of(fresh));
+    }
+
     @Test
     void updateCustomer() {
-        underTest.updateCustomer(new Customer());
+        underTest.updateCustomer(new Customer(1L, "name", "email@test.com", 20));
         //Then
-        Mockito.verify(customerRepository, Mockito.times(1)).save(Mockito.any(Customer.class));
+        Mockito.verify(customerRepository, Mockito.times(1)).updateCustomer(1L, "name", "email@test.com", 20);
+    }
+
+    @Test
+    void updateCustomerIfChanged() {
+        Mockito.when(customerRepository.updateCustomerIfChanged(1L, "name", "email@test.com", 20, null)).thenReturn(1);
+        CustomerUpdateResult result = underTest.updateCustomerIfChanged(new Customer(1L, "name", "email@test.com", 20));
+        //Then
+        assertThat(result).isEqualTo(CustomerUpdateResult.UPDATED);
+        Mockito.verify(customerRepository, Mockito.times(0)).findVersionById(Mockito.anyLong());
+    }
+
+    @Test
+    void updateCustomerIfChangedWhenUnchanged() {
+        Mockito.when(customerRepository.updateCustomerIfChanged(1L, "name", "email@test.com", 20, null)).thenReturn(0);
+        Mockito.when(customerRepository.findVersionById(1L)).thenReturn(Optional.of(2L));
+        CustomerUpdateResult result = underTest.updateCustomerIfChanged(new Customer(1L, "name", "email@test.com", 20));
+        //Then
+        assertThat(result).isEqualTo(CustomerUpdateResult.UNCHANGED);
+    }
+
+    @Test
+    void updateCustomerIfChangedWhenNotFound() {
+        Mockito.when(customerRepository.updateCustomerIfChanged(1L, "name", "email@test.com", 20, null)).thenReturn(0);
+        Mockito.when(customerRepository.findVersionById(1L)).thenReturn(Optional.empty());
+        CustomerUpdateResult result = underTest.updateCustomerIfChanged(new Customer(1L, "name", "email@test.com", 20));
+        //Then
+        assertThat(result).isEqualTo(CustomerUpdateResult.NOT_FOUND);
+    }
+
+    @Test
+    void updateCustomerIfChangedWhenVersionIsStale() {
+        Mockito.when(customerRepository.updateCustomerIfChanged(1L, "name", "email@test.com", 20, 2L)).thenReturn(0);
+        Mockito.when(customerRepository.findVersionById(1L)).thenReturn(Optional.of(3L));
+        CustomerUpdateResult result = underTest.updateCustomerIfChanged(new Customer(1L, "name", "email@test.com", 20, 2L));
+        //Then
+        assertThat(result).isEqualTo(CustomerUpdateResult.VERSION_CONFLICT);
     }
 
     @Test
     void deleteCustomerById() {
-        Mockito.doNothing().when(customerRepository).deleteById(Mockito.anyLong());
-        underTest.deleteCustomerById(1L);
+        Mockito.when(customerRepository.deleteCustomerById(Mockito.anyLong())).thenReturn(1);
+        boolean deleted = underTest.deleteCustomerById(1L);
         //Then
-        Mockito.verify(customerRepository, Mockito.times(1)).deleteById(Mockito.anyLong());
+        assertTrue(deleted);
+        Mockito.verify(customerRepository, Mockito.times(1)).deleteCustomerById(Mockito.anyLong());
     }
 }
\ No newline at end of file
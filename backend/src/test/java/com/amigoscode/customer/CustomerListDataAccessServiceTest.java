@@ -0,0 +1,240 @@
+package com.amigoscode.customer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class CustomerListDataAccessServiceTest {
+
+    private CustomerListDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerListDataAccessService();
+    }
+
+    @Test
+    void insertAndSelectCustomer() {
+        //When
+        Long id = underTest.insertCustomerIfAbsent(new Customer("alex", "alex@test.com", 30)).get();
+
+        //Then
+        assertThat(underTest.selectCustomerById(id)).contains(new Customer(id, "alex", "alex@test.com", 30));
+        assertThat(underTest.selectCustomerByEmail("alex@test.com")).contains(new Customer(id, "alex", "alex@test.com", 30));
+        assertThat(underTest.selectAllCustomers()).hasSize(1);
+    }
+
+    @Test
+    void insertCustomerIfAbsentRejectsDuplicateEmail() {
+        //Given
+        underTest.insertCustomerIfAbsent(new Customer("alex", "alex@test.com", 30));
+
+        //When
+        Optional<Long> result = underTest.insertCustomerIfAbsent(new Customer("other", "alex@test.com", 40));
+
+        //Then
+        assertThat(result).isEmpty();
+        assertThatExceptionOfType(DuplicateKeyException.class)
+                .isThrownBy(() -> underTest.insertCustomer(new Customer("other", "alex@test.com", 40)));
+    }
+
+    @Test
+    void selectCustomersAfter() {
+        //Given
+        for (int i = 0; i < 5; i++) {
+            underTest.insertCustomer(new Customer("page", i + "@test.com", 20 + i));
+        }
+
+        //When
+        List<Customer> page = underTest.selectCustomersAfter(2L, 2);
+
+        //Then
+        assertThat(page).extracting(Customer::getId).containsExactly(3L, 4L);
+    }
+
+    @Test
+    void selectCustomerByIdReturnsCopy() {
+        //Given
+        Long id = underTest.insertCustomerIfAbsent(new Customer("alex", "alex@test.com", 30)).get();
+
+        //When
+        underTest.selectCustomerById(id).get().setName("changed");
+
+        //Then
+        assertThat(underTest.selectCustomerById(id).get().getName()).isEqualTo("alex");
+    }
+
+    @Test
+    void selectCustomersByIdsSkipsMissingIds() {
+        //Given
+        Long alex = underTest.insertCustomerIfAbsent(new Customer("alex", "alex@test.com", 30)).get();
+        Long sam = underTest.insertCustomerIfAbsent(new Customer("sam", "sam@test.com", 31)).get();
+
+        //When
+        List<Customer> customers = underTest.selectCustomersByIds(List.of(sam, -1L, alex));
+
+        //Then
+        assertThat(customers).extracting(Customer::getName).containsExactlyInAnyOrder("alex", "sam");
+    }
+
+    @Test
+    void updateCustomerIfChangedMovesEmailIndex() {
+        //Given
+        Long id = underTest.insertCustomerIfAbsent(new Customer("alex", "alex@test.com", 30)).get();
+
+        //When
+        CustomerUpdateResult updated = underTest.updateCustomerIfChanged(new Customer(id, "alex", "new@test.com", 30));
+        CustomerUpdateResult unchanged = underTest.updateCustomerIfChanged(new Customer(id, "alex", "new@test.com", 30));
+        CustomerUpdateResult missing = underTest.updateCustomerIfChanged(new Customer(-1L, "alex", "new@test.com", 30));
+
+        //Then
+        assertThat(updated).isEqualTo(CustomerUpdateResult.UPDATED);
+        assertThat(unchanged).isEqualTo(CustomerUpdateResult.UNCHANGED);
+        assertThat(missing).isEqualTo(CustomerUpdateResult.NOT_FOUND);
+        assertThat(underTest.selectCustomerByEmail("alex@test.com")).isEmpty();
+        assertThat(underTest.selectCustomerByEmail("new@test.com")).isPresent();
+        assertThat(underTest.insertCustomerIfAbsent(new Customer("taken", "alex@test.com", 30))).isPresent();
+    }
+
+    @Test
+    void updateCustomerIfChangedBumpsVersion() {
+        //Given
+        Long id = underTest.insertCustomerIfAbsent(new Customer("alex", "alex@test.com", 30)).get();
+
+        //When
+        underTest.updateCustomerIfChanged(new Customer(id, "alex", "alex@test.com", 30));
+        long unchanged = underTest.selectCustomerVersion(id).get();
+        underTest.updateCustomerIfChanged(new Customer(id, "alex", "alex@test.com", 31));
+
+        //Then
+        assertThat(unchanged).isZero();
+        assertThat(underTest.selectCustomerVersion(id)).contains(1L);
+    }
+
+    @Test
+    void updateCustomerToTakenEmailFails() {
+        //Given
+        underTest.insertCustomerIfAbsent(new Customer("alex", "alex@test.com", 30));
+        Long id = underTest.insertCustomerIfAbsent(new Customer("sam", "sam@test.com", 30)).get();
+
+        //When
+        assertThatExceptionOfType(DuplicateKeyException.class)
+                .isThrownBy(() -> underTest.updateCustomerIfChanged(new Customer(id, "sam", "alex@test.com", 30)));
+
+        //Then
+        assertThat(underTest.selectCustomerById(id).get().getEmail()).isEqualTo("sam@test.com");
+    }
+
+    @Test
+    void deleteCustomerByIdReleasesEmail() {
+        //Given
+        Long id = underTest.insertCustomerIfAbsent(new Customer("alex", "alex@test.com", 30)).get();
+
+        //When
+        boolean deleted = underTest.deleteCustomerById(id);
+
+        //Then
+        assertThat(deleted).isTrue();
+        assertThat(underTest.deleteCustomerById(id)).isFalse();
+        assertThat(underTest.selectCustomerById(id)).isEmpty();
+        assertThat(underTest.insertCustomerIfAbsent(new Customer("alex", "alex@test.com", 30))).isPresent();
+    }
+
+    @Test
+    void concurrentInsertsOfSameEmailCreateOneCustomer() throws Exception {
+        //Given
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Optional<Long>>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return underTest.insertCustomerIfAbsent(new Customer("racer", "race@test.com", 30));
+            }));
+        }
+
+        //When
+        start.countDown();
+        int created = 0;
+        for (Future<Optional<Long>> result : results) {
+            created += result.get(10, TimeUnit.SECONDS).isPresent() ? 1 : 0;
+        }
+        executor.shutdown();
+
+        //Then
+        assertThat(created).isEqualTo(1);
+        assertThat(underTest.selectAllCustomers()).hasSize(1);
+    }
+
+    @Test
+    void mixedReadWriteStress() throws Exception {
+        //Given
+        int threads = Runtime.getRuntime().availableProcessors() * 2;
+        int operationsPerThread = 50_000;
+        int emails = 2_000;
+        for (int i = 0; i < emails / 2; i++) {
+            underTest.insertCustomerIfAbsent(new Customer("seed", "user" + i + "@test.com", 30));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(executor.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < operationsPerThread; i++) {
+                    String email = "user" + random.nextInt(emails) + "@test.com";
+                    long id = 1 + random.nextLong(emails * 2L);
+                    int operation = random.nextInt(100);
+                    if (operation < 70) {
+                        underTest.selectCustomerById(id);
+                        underTest.selectCustomerByEmail(email);
+                    } else if (operation < 85) {
+                        underTest.insertCustomerIfAbsent(new Customer("insert", email, 30));
+                    } else if (operation < 95) {
+                        try {
+                            underTest.updateCustomerIfChanged(new Customer(id, "update", email, random.nextInt(18, 99)));
+                        } catch (DuplicateKeyException ignored) {
+                        }
+                    } else {
+                        underTest.deleteCustomerById(id);
+                    }
+                }
+                return null;
+            }));
+        }
+
+        //When
+        long startNanos = System.nanoTime();
+        start.countDown();
+        for (Future<?> worker : workers) {
+            worker.get(2, TimeUnit.MINUTES);
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        executor.shutdown();
+
+        //Then
+        List<Customer> customers = underTest.selectAllCustomers();
+        assertThat(customers.stream().map(Customer::getEmail).collect(Collectors.toSet())).hasSameSizeAs(customers);
+        for (Customer customer : customers) {
+            assertThat(underTest.selectCustomerByEmail(customer.getEmail())).contains(customer);
+        }
+        System.out.printf("CustomerListDataAccessService: %d threads, %d ops/s%n",
+                threads, threads * (long) operationsPerThread * TimeUnit.SECONDS.toNanos(1) / elapsedNanos);
+    }
+}
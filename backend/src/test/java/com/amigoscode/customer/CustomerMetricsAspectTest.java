@@ -0,0 +1,61 @@
+package com.amigoscode.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.dao.DuplicateKeyException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class CustomerMetricsAspectTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private CustomerDAO underTest;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(new CustomerListDataAccessService());
+        proxyFactory.addAspect(new CustomerMetricsAspect(meterRegistry));
+        underTest = proxyFactory.getProxy();
+    }
+
+    @Test
+    void recordsLatencyAndRowsPerImplementationAndMethod() {
+        //Given
+        underTest.insertCustomer(new Customer("alex", "alex@test.com", 30));
+        underTest.insertCustomer(new Customer("sam", "sam@test.com", 30));
+
+        //When
+        underTest.selectAllCustomers();
+        underTest.selectCustomerById(-1L);
+
+        //Then
+        assertThat(meterRegistry.get("customer.dao.calls")
+                .tags("implementation", "list", "method", "insertCustomer", "outcome", "success")
+                .timer().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("customer.dao.rows")
+                .tags("implementation", "list", "method", "selectAllCustomers")
+                .summary().totalAmount()).isEqualTo(2);
+        assertThat(meterRegistry.get("customer.dao.calls")
+                .tags("implementation", "list", "method", "selectCustomerById")
+                .timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void recordsErrorsByExceptionType() {
+        //Given
+        underTest.insertCustomer(new Customer("alex", "alex@test.com", 30));
+
+        //When
+        assertThatExceptionOfType(DuplicateKeyException.class)
+                .isThrownBy(() -> underTest.insertCustomer(new Customer("alex", "alex@test.com", 30)));
+
+        //Then
+        assertThat(meterRegistry.get("customer.dao.calls")
+                .tags("method", "insertCustomer", "outcome", "error", "exception", "DuplicateKeyException")
+                .timer().count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,122 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.AbstractTestContainers;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerR2DBCDataAccessServiceTest extends AbstractTestContainers {
+
+    private CustomerR2DBCDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions
+                .parse(postgreSQLContainer.getJdbcUrl().replaceFirst("^jdbc:", "r2dbc:"))
+                .mutate()
+                .option(ConnectionFactoryOptions.USER, postgreSQLContainer.getUsername())
+                .option(ConnectionFactoryOptions.PASSWORD, postgreSQLContainer.getPassword())
+                .build();
+        underTest = new CustomerR2DBCDataAccessService(DatabaseClient.create(ConnectionFactories.get(options)));
+    }
+
+    @Test
+    void insertAndSelectCustomer() {
+        //Given
+        String email = UUID.randomUUID() + "@test.com";
+
+        //When
+        Long id = underTest.insertCustomerIfAbsent(new Customer("Milo", email, 29)).block();
+
+        //Then
+        StepVerifier.create(underTest.selectCustomerById(id))
+                .expectNext(new Customer(id, "Milo", email, 29))
+                .verifyComplete();
+        StepVerifier.create(underTest.selectCustomerByEmail(email))
+                .expectNext(new Customer(id, "Milo", email, 29))
+                .verifyComplete();
+        StepVerifier.create(underTest.insertCustomerIfAbsent(new Customer("Other", email, 40)))
+                .verifyComplete();
+    }
+
+    @Test
+    void selectAllCustomersStreamsEveryRow() {
+        //Given
+        int rows = 2_500;
+        String prefix = UUID.randomUUID().toString();
+        getJdbcTemplate().update("""
+                INSERT INTO customer (name, email, age)
+                SELECT 'stream', ? || '-' || g || '@test.com', 30 FROM generate_series(1, ?) g
+                """, prefix, rows);
+
+        //When
+        Long streamed = underTest.selectAllCustomers()
+                .filter(customer -> customer.getEmail().startsWith(prefix))
+                .count()
+                .block();
+
+        //Then
+        assertThat(streamed).isEqualTo(rows);
+    }
+
+    @Test
+    void insertCustomersReportsDuplicates() {
+        //Given
+        String taken = UUID.randomUUID() + "@test.com";
+        underTest.insertCustomer(new Customer("taken", taken, 30)).block();
+        String fresh = UUID.randomUUID() + "@test.com";
+
+        //When
+        List<Optional<Long>> ids = underTest.insertCustomers(List.of(
+                new Customer("fresh", fresh, 20),
+                new Customer("dup", taken, 21))).block();
+
+        //Then
+        assertThat(ids).hasSize(2);
+        assertThat(ids.get(0)).isPresent();
+        assertThat(ids.get(1)).isEmpty();
+    }
+
+    @Test
+    void updateCustomerIfChanged() {
+        //Given
+        String email = UUID.randomUUID() + "@test.com";
+        Long id = underTest.insertCustomerIfAbsent(new Customer("Milo", email, 29)).block();
+
+        //When
+        //Then
+        StepVerifier.create(underTest.updateCustomerIfChanged(new Customer(id, "Milo", email, 30)))
+                .expectNext(CustomerUpdateResult.UPDATED)
+                .verifyComplete();
+        StepVerifier.create(underTest.updateCustomerIfChanged(new Customer(id, "Milo", email, 30)))
+                .expectNext(CustomerUpdateResult.UNCHANGED)
+                .verifyComplete();
+        StepVerifier.create(underTest.updateCustomerIfChanged(new Customer(-1L, "Milo", email, 30)))
+                .expectNext(CustomerUpdateResult.NOT_FOUND)
+                .verifyComplete();
+    }
+
+    @Test
+    void deleteCustomerById() {
+        //Given
+        Long id = underTest.insertCustomerIfAbsent(new Customer("Milo", UUID.randomUUID() + "@test.com", 29)).block();
+
+        //When
+        //Then
+        StepVerifier.create(underTest.deleteCustomerById(id))
+                .expectNext(true)
+                .verifyComplete();
+        StepVerifier.create(underTest.deleteCustomerById(id))
+                .expectNext(false)
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,166 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.main;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.Network;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// a primary and a streaming replica of it, with the replica's replay paused to make it fall behind
+class CustomerReadReplicaTest {
+
+    private static final Network network = Network.newNetwork();
+
+    private static final PostgreSQLContainer<?> primary =
+            new PostgreSQLContainer<>("postgres:latest")
+                    .withNetwork(network)
+                    .withNetworkAliases("primary")
+                    .withDatabaseName("amigoscode-replica-test")
+                    .withUsername("amigoscode")
+                    .withPassword("password");
+
+    private static final GenericContainer<?> replica =
+            new GenericContainer<>("postgres:latest")
+                    .withNetwork(network)
+                    .withEnv("PGPASSWORD", "password")
+                    .withCreateContainerCmdModifier(cmd -> cmd.withUser("postgres"))
+                    .withCommand("bash", "-c", """
+                            pg_basebackup -h primary -U amigoscode -D "$PGDATA" -R -X stream \
+                            && chmod 0700 "$PGDATA" && exec postgres
+                            """)
+                    .withExposedPorts(5432)
+                    .waitingFor(Wait.forLogMessage(".*ready to accept read-only connections.*", 1));
+
+    private ConfigurableApplicationContext context;
+
+    @BeforeAll
+    static void beforeAll() throws Exception {
+        primary.start();
+        primary.execInContainer("bash", "-c",
+                "echo 'host replication all all scram-sha-256' >> \"$PGDATA/pg_hba.conf\"");
+        jdbcTemplate(primary.getJdbcUrl()).execute("SELECT pg_reload_conf()");
+        replica.start();
+    }
+
+    @AfterAll
+    static void afterAll() {
+        replica.stop();
+        primary.stop();
+        network.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        context = new SpringApplicationBuilder(main.class).run(
+                "--spring.main.web-application-type=none",
+                "--spring.datasource.url=" + primary.getJdbcUrl(),
+                "--spring.datasource.username=" + primary.getUsername(),
+                "--spring.datasource.password=" + primary.getPassword(),
+                "--customer.datasource.replicas.urls=" + replicaJdbcUrl(),
+                "--customer.datasource.replicas.max-lag=2s",
+                "--customer.datasource.replicas.health-check-interval=100ms",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=warn");
+        await(this::readsGoToReplica);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate(replicaJdbcUrl()).execute("SELECT pg_wal_replay_resume()");
+        context.close();
+    }
+
+    @Test
+    void readsAreServedByTheReplicaAndVersionChecksByThePrimary() {
+        //Given
+        CustomerDAO customerDAO = context.getBean("jdbc", CustomerDAO.class);
+        String email = UUID.randomUUID() + "@test.com";
+        Long id = insertAndReplicate(customerDAO, new Customer("alex", email, 30));
+        jdbcTemplate(replicaJdbcUrl()).execute("SELECT pg_wal_replay_pause()");
+
+        //When
+        customerDAO.updateCustomerIfChanged(new Customer(id, "sam", email, 30));
+
+        //Then
+        assertThat(customerDAO.selectCustomerById(id).get().getName()).isEqualTo("alex");
+        assertThat(customerDAO.selectCustomerVersion(id)).contains(1L);
+    }
+
+    @Test
+    void laggingReplicaIsTakenOutOfRotationUntilItCatchesUp() {
+        //Given
+        CustomerDAO customerDAO = context.getBean("jdbc", CustomerDAO.class);
+        String email = UUID.randomUUID() + "@test.com";
+        Long id = insertAndReplicate(customerDAO, new Customer("alex", email, 30));
+        jdbcTemplate(replicaJdbcUrl()).execute("SELECT pg_wal_replay_pause()");
+        customerDAO.updateCustomerIfChanged(new Customer(id, "sam", email, 30));
+
+        //When
+        await(() -> !readsGoToReplica());
+
+        //Then
+        assertThat(customerDAO.selectCustomerById(id).get().getName()).isEqualTo("sam");
+        jdbcTemplate(replicaJdbcUrl()).execute("SELECT pg_wal_replay_resume()");
+        await(this::readsGoToReplica);
+        assertThat(customerDAO.selectCustomerById(id).get().getName()).isEqualTo("sam");
+    }
+
+    private Long insertAndReplicate(CustomerDAO customerDAO, Customer customer) {
+        Long id = customerDAO.insertCustomerIfAbsent(customer).get();
+        await(() -> jdbcTemplate(replicaJdbcUrl())
+                .queryForObject("SELECT count(*) FROM customer WHERE id = ?", Long.class, id) == 1);
+        return id;
+    }
+
+    private boolean readsGoToReplica() {
+        TransactionTemplate readOnly = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnly.setReadOnly(true);
+        return readOnly.execute(status -> context.getBean(JdbcTemplate.class)
+                .queryForObject("SELECT pg_is_in_recovery()", Boolean.class));
+    }
+
+    private static void await(BooleanSupplier condition) {
+        Instant deadline = Instant.now().plus(Duration.ofSeconds(10));
+        while (!condition.getAsBoolean() && Instant.now().isBefore(deadline)) {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+
+    private static String replicaJdbcUrl() {
+        return "jdbc:postgresql://%s:%d/%s".formatted(
+                replica.getHost(), replica.getMappedPort(5432), primary.getDatabaseName());
+    }
+
+    private static JdbcTemplate jdbcTemplate(String url) {
+        return new JdbcTemplate(DataSourceBuilder.create()
+                .type(SimpleDriverDataSource.class)
+                .url(url)
+                .username(primary.getUsername())
+                .password(primary.getPassword())
+                .build());
+    }
+}
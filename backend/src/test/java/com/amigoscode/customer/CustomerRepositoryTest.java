@@ -8,8 +8,10 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
@@ -39,4 +41,28 @@ class CustomerRepositoryTest extends AbstractTestContainers {
         assertThat(result.get().getName()).isEqualTo(customer.getName());
         assertThat(result.get().getAge()).isEqualTo(customer.getAge());
     }
-}
\ No newline at end of file
+
+    @Test
+    void saveAllFetchesOneSequenceValuePerAllocationBlock() {
+        //Given
+        int customers = 500;
+        long increment = getJdbcTemplate().queryForObject(
+                "SELECT increment_by FROM pg_sequences WHERE sequencename = 'customer_id_seq'", Long.class);
+        long before = nextSequenceValue();
+
+        //When
+        List<Customer> saved = underTest.saveAllAndFlush(IntStream.range(0, customers)
+                .mapToObj(i -> new Customer("pooled", UUID.randomUUID() + "@test.com", 30))
+                .toList());
+
+        //Then
+        long sequenceCalls = (nextSequenceValue() - before) / increment - 1;
+        assertThat(increment).isEqualTo(50);
+        assertThat(sequenceCalls).isEqualTo(customers / increment);
+        assertThat(saved).extracting(Customer::getId).doesNotHaveDuplicates();
+    }
+
+    private static long nextSequenceValue() {
+        return getJdbcTemplate().queryForObject("SELECT nextval('customer_id_seq')", Long.class);
+    }
+}
@@ -1,6 +1,8 @@
 package com.amigoscode.customer;
 
 import com.amigoscode.exception.DuplicateResourceException;
+import com.amigoscode.exception.PreconditionFailedException;
+import com.amigoscode.exception.RequestValidationException;
 import com.amigoscode.exception.ResourceNotFoundException;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -11,8 +13,10 @@ import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
@@ -45,6 +49,55 @@ class CustomerServiceTest {
         Mockito.verify(customerDAO).selectAllCustomers();
     }
 
+    @Test
+    void getCustomersPage() {
+        //Given
+        Mockito.when(customerDAO.selectCustomersAfter(10L, 2))
+                .thenReturn(List.of(new Customer(11L, "a", "a@test.com", 20), new Customer(12L, "b", "b@test.com", 21)));
+
+        //When
+        CustomerPage page = customerService.getCustomersPage(10L, 2);
+
+        //Then
+        assertThat(page.customers()).hasSize(2);
+        assertThat(page.nextCursor()).isEqualTo(12L);
+    }
+
+    @Test
+    void getCustomersPageLastPageHasNoCursor() {
+        //Given
+        Mockito.when(customerDAO.selectCustomersAfter(0L, 5))
+                .thenReturn(List.of(new Customer(1L, "a", "a@test.com", 20)));
+
+        //When
+        CustomerPage page = customerService.getCustomersPage(null, 5);
+
+        //Then
+        assertThat(page.customers()).hasSize(1);
+        assertThat(page.nextCursor()).isNull();
+    }
+
+    @Test
+    void getCustomersPageCapsLimit() {
+        //When
+        customerService.getCustomersPage(0L, 1_000_000);
+
+        //Then
+        Mockito.verify(customerDAO).selectCustomersAfter(0L, 1000);
+    }
+
+    @Test
+    void exportCustomers() {
+        //Given
+        Consumer<Customer> action = customer -> { };
+
+        //When
+        customerService.exportCustomers(action);
+
+        //Then
+        Mockito.verify(customerDAO).forEachCustomer(action);
+    }
+
     @Test
     void getCustomer() {
         //Given
@@ -69,20 +122,89 @@ class CustomerServiceTest {
         Mockito.verify(customerDAO).selectCustomerById(Mockito.anyLong());
     }
 
+    @Test
+    void getCustomersKeepsRequestOrderAndReportsMissingIds() {
+        //Given
+        Mockito.when(customerDAO.selectCustomersByIds(List.of(3L, 1L, 2L)))
+                .thenReturn(List.of(new Customer(1L, "a", "a@test.com", 20), new Customer(3L, "c", "c@test.com", 22)));
+
+        //When
+        CustomerLookupResult result = customerService.getCustomers(List.of(3L, 1L, 3L, 2L));
+
+        //Then
+        assertThat(result.customers()).extracting(Customer::getId).containsExactly(3L, 1L);
+        assertThat(result.missingIds()).containsExactly(2L);
+    }
+
+    @Test
+    void getCustomersQueriesLargeLookupsInChunks() {
+        //Given
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= CustomerService.LOOKUP_CHUNK_SIZE + 1; id++) {
+            ids.add(id);
+        }
+        Mockito.when(customerDAO.selectCustomersByIds(Mockito.anyCollection())).thenReturn(List.of());
+
+        //When
+        CustomerLookupResult result = customerService.getCustomers(ids);
+
+        //Then
+        Mockito.verify(customerDAO).selectCustomersByIds(ids.subList(0, CustomerService.LOOKUP_CHUNK_SIZE));
+        Mockito.verify(customerDAO).selectCustomersByIds(List.of(CustomerService.LOOKUP_CHUNK_SIZE + 1L));
+        assertThat(result.missingIds()).hasSize(ids.size());
+    }
+
+    @Test
+    void getCustomersRejectsOversizedLookup() {
+        //Given
+        List<Long> ids = Collections.nCopies(CustomerService.MAX_LOOKUP_SIZE + 1, 1L);
+
+        //When
+        //Then
+        assertThatExceptionOfType(RequestValidationException.class)
+                .isThrownBy(() -> customerService.getCustomers(ids));
+        Mockito.verifyNoInteractions(customerDAO);
+    }
+
+    @Test
+    void getCustomerVersion() {
+        //Given
+        Mockito.when(customerDAO.selectCustomerVersion(1L)).thenReturn(Optional.of(3L));
+
+        //When
+        long version = customerService.getCustomerVersion(1L);
+
+        //Then
+        assertThat(version).isEqualTo(3L);
+        Mockito.verify(customerDAO, Mockito.never()).selectCustomerById(Mockito.anyLong());
+    }
+
+    @Test
+    void getCustomerVersionNoCustomerFound() {
+        //Given
+        Mockito.when(customerDAO.selectCustomerVersion(1L)).thenReturn(Optional.empty());
+
+        //When
+        //Then
+        assertThatExceptionOfType(ResourceNotFoundException.class)
+                .isThrownBy(() -> customerService.getCustomerVersion(1L));
+    }
+
     @Test
     void addCustomer() {
         //Given
-        Mockito.when(customerDAO.selectCustomerByEmail(Mockito.anyString())).thenReturn(Optional.empty());
+        Mockito.when(customerDAO.insertCustomerIfAbsent(Mockito.any(Customer.class))).thenReturn(Optional.of(42L));
 
         //When
         CustomerRegistrationRequest request = new CustomerRegistrationRequest("name", "email@test.com", 55);
-        customerService.addCustomer(request);
+        Long id = customerService.addCustomer(request);
         //Then
-        Mockito.verify(customerDAO, Mockito.times(1)).selectCustomerByEmail(Mockito.anyString());
+        assertThat(id).isEqualTo(42L);
+        Mockito.verify(customerDAO, Mockito.times(0)).selectCustomerByEmail(Mockito.anyString());
 
         ArgumentCaptor<Customer> customerCaptor = ArgumentCaptor.forClass(Customer.class);
 
-        Mockito.verify(customerDAO, Mockito.times(1)).insertCustomer(customerCaptor.capture());
+        Mockito.verify(customerDAO, Mockito.times(1)).insertCustomerIfAbsent(customerCaptor.capture());
 
         Customer customer = customerCaptor.getValue();
         assertNotNull(customer);
@@ -95,20 +217,52 @@ class CustomerServiceTest {
     @Test
     void addCustomerAlreadyExists() {
         //Given
-        Mockito.when(customerDAO.selectCustomerByEmail(Mockito.anyString())).thenReturn(Optional.of(new Customer()));
+        Mockito.when(customerDAO.insertCustomerIfAbsent(Mockito.any(Customer.class))).thenReturn(Optional.empty());
 
         //When
         assertThatExceptionOfType(DuplicateResourceException.class)
                 .isThrownBy(() -> customerService.addCustomer(new CustomerRegistrationRequest("name", "email@test.com", 55)));
         //Then
-        Mockito.verify(customerDAO, Mockito.times(1)).selectCustomerByEmail(Mockito.anyString());
+        Mockito.verify(customerDAO, Mockito.times(1)).insertCustomerIfAbsent(Mockito.any(Customer.class));
         Mockito.verify(customerDAO, Mockito.times(0)).insertCustomer(Mockito.any(Customer.class));
     }
 
+    @Test
+    void addCustomers() {
+        //Given
+        Mockito.when(customerDAO.insertCustomers(Mockito.anyList()))
+                .thenReturn(List.of(Optional.of(7L), Optional.empty()));
+
+        //When
+        List<CustomerRegistrationResult> results = customerService.addCustomers(List.of(
+                new CustomerRegistrationRequest("one", "one@test.com", 20),
+                new CustomerRegistrationRequest("two", "two@test.com", 30)));
+
+        //Then
+        assertThat(results).containsExactly(
+                new CustomerRegistrationResult("one@test.com", 7L, CustomerRegistrationResult.Status.CREATED),
+                new CustomerRegistrationResult("two@test.com", null, CustomerRegistrationResult.Status.DUPLICATE));
+        Mockito.verify(customerDAO, Mockito.times(1)).insertCustomers(Mockito.anyList());
+    }
+
+    @Test
+    void addCustomersRejectsOversizedBatch() {
+        //Given
+        List<CustomerRegistrationRequest> requests = Collections.nCopies(10_001,
+                new CustomerRegistrationRequest("name", "email@test.com", 55));
+
+        //When
+        assertThatExceptionOfType(RequestValidationException.class)
+                .isThrownBy(() -> customerService.addCustomers(requests));
+
+        //Then
+        Mockito.verify(customerDAO, Mockito.times(0)).insertCustomers(Mockito.anyList());
+    }
+
     @Test
     void updateCustomerWhenCustomerDoesNotExists() {
         //Given
-        Mockito.when(customerDAO.selectCustomerById(Mockito.anyLong())).thenReturn(Optional.empty());
+        Mockito.when(customerDAO.updateCustomerIfChanged(Mockito.any(Customer.class))).thenReturn(CustomerUpdateResult.NOT_FOUND);
 
         //When
         assertThatExceptionOfType(ResourceNotFoundException.class)
@@ -116,15 +270,28 @@ class CustomerServiceTest {
 
 
         //Then
-        Mockito.verify(customerDAO, Mockito.times(1)).selectCustomerById(Mockito.anyLong());
-        Mockito.verify(customerDAO, Mockito.times(0)).updateCustomer(Mockito.any(Customer.class));
+        Mockito.verify(customerDAO, Mockito.times(0)).selectCustomerById(Mockito.anyLong());
+        Mockito.verify(customerDAO, Mockito.times(1)).updateCustomerIfChanged(Mockito.any(Customer.class));
+
+    }
+
+    @Test
+    void updateCustomerWithMissingFieldIsRejected() {
+        //Given
+        CustomerRegistrationRequest nameless = new CustomerRegistrationRequest(null, "email@test.com", 55);
+
+        //When
+        assertThatExceptionOfType(RequestValidationException.class)
+                .isThrownBy(() -> customerService.updateCustomer(1L, nameless));
 
+        //Then
+        Mockito.verify(customerDAO, Mockito.never()).updateCustomerIfChanged(Mockito.any(Customer.class));
     }
 
     @Test
     void updateCustomerWhenNoChanges() {
         //Given
-        Mockito.when(customerDAO.selectCustomerById(Mockito.anyLong())).thenReturn(Optional.of(new Customer("name", "email@test.com", 55)));
+        Mockito.when(customerDAO.updateCustomerIfChanged(Mockito.any(Customer.class))).thenReturn(CustomerUpdateResult.UNCHANGED);
 
         //When
         assertThatExceptionOfType(DuplicateResourceException.class)
@@ -132,51 +299,68 @@ class CustomerServiceTest {
 
 
         //Then
-        Mockito.verify(customerDAO, Mockito.times(1)).selectCustomerById(Mockito.anyLong());
-        Mockito.verify(customerDAO, Mockito.times(0)).updateCustomer(Mockito.any(Customer.class));
+        Mockito.verify(customerDAO, Mockito.times(0)).selectCustomerById(Mockito.anyLong());
+        Mockito.verify(customerDAO, Mockito.times(1)).updateCustomerIfChanged(Mockito.any(Customer.class));
 
     }
 
     @Test
     void updateCustomer() {
         //Given
-        Mockito.when(customerDAO.selectCustomerById(Mockito.anyLong())).thenReturn(Optional.of(new Customer("newName", "email@test.com", 55)));
+        Mockito.when(customerDAO.updateCustomerIfChanged(Mockito.any(Customer.class))).thenReturn(CustomerUpdateResult.UPDATED);
 
         //When
-        customerService.updateCustomer(1L, new CustomerRegistrationRequest("oldName", "email@test.com", 55));
+        customerService.updateCustomer(1L, new CustomerRegistrationRequest("newName", "email@test.com", 55));
 
         ArgumentCaptor<Customer> customerCaptor = ArgumentCaptor.forClass(Customer.class);
 
         //Then
-        Mockito.verify(customerDAO, Mockito.times(1)).selectCustomerById(Mockito.anyLong());
-        Mockito.verify(customerDAO, Mockito.times(1)).updateCustomer(customerCaptor.capture());
+        Mockito.verify(customerDAO, Mockito.times(0)).selectCustomerById(Mockito.anyLong());
+        Mockito.verify(customerDAO, Mockito.times(1)).updateCustomerIfChanged(customerCaptor.capture());
+        assertThat(customerCaptor.getValue()).isEqualTo(new Customer(1L, "newName", "email@test.com", 55));
 
     }
 
+    @Test
+    void updateCustomerWhenVersionIsStale() {
+        //Given
+        Mockito.when(customerDAO.updateCustomerIfChanged(Mockito.any(Customer.class))).thenReturn(CustomerUpdateResult.VERSION_CONFLICT);
+
+        //When
+        assertThatExceptionOfType(PreconditionFailedException.class)
+                .isThrownBy(() -> customerService.updateCustomer(1L, new CustomerRegistrationRequest("newName", "email@test.com", 55), 3L));
+
+        ArgumentCaptor<Customer> customerCaptor = ArgumentCaptor.forClass(Customer.class);
+
+        //Then
+        Mockito.verify(customerDAO, Mockito.times(1)).updateCustomerIfChanged(customerCaptor.capture());
+        assertThat(customerCaptor.getValue().getVersion()).isEqualTo(3L);
+    }
+
     @Test
     void deleteCustomerWhenCustomerDoesNotExist() {
         //Given
-        Mockito.when(customerDAO.selectCustomerById(Mockito.anyLong())).thenReturn(Optional.empty());
+        Mockito.when(customerDAO.deleteCustomerById(Mockito.anyLong())).thenReturn(false);
 
         //When
         assertThatExceptionOfType(ResourceNotFoundException.class)
                 .isThrownBy(() -> customerService.deleteCustomer(1L));
 
         //Then
-        Mockito.verify(customerDAO, Mockito.times(1)).selectCustomerById(Mockito.anyLong());
-        Mockito.verify(customerDAO, Mockito.times(0)).deleteCustomerById(Mockito.anyLong());
+        Mockito.verify(customerDAO, Mockito.times(0)).selectCustomerById(Mockito.anyLong());
+        Mockito.verify(customerDAO, Mockito.times(1)).deleteCustomerById(Mockito.anyLong());
     }
 
     @Test
     void deleteCustomer() {
         //Given
-        Mockito.when(customerDAO.selectCustomerById(Mockito.anyLong())).thenReturn(Optional.of(new Customer("newName", "email@test.com", 55)));
+        Mockito.when(customerDAO.deleteCustomerById(Mockito.anyLong())).thenReturn(true);
 
         //When
         customerService.deleteCustomer(1L);
 
         //Then
-        Mockito.verify(customerDAO, Mockito.times(1)).selectCustomerById(Mockito.anyLong());
+        Mockito.verify(customerDAO, Mockito.times(0)).selectCustomerById(Mockito.anyLong());
         Mockito.verify(customerDAO, Mockito.times(1)).deleteCustomerById(Mockito.anyLong());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,194 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.DuplicateResourceException;
+import com.amigoscode.exception.PreconditionFailedException;
+import com.amigoscode.exception.RequestValidationException;
+import com.amigoscode.exception.ResourceNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+class ReactiveCustomerServiceTest {
+
+    @Mock
+    private ReactiveCustomerDAO customerDAO;
+    private AutoCloseable autoCloseable;
+    private ReactiveCustomerService customerService;
+
+    @BeforeEach
+    void setUp() {
+        autoCloseable = MockitoAnnotations.openMocks(this);
+        customerService = new ReactiveCustomerService(customerDAO);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        autoCloseable.close();
+    }
+
+    @Test
+    void getCustomersPage() {
+        //Given
+        Mockito.when(customerDAO.selectCustomersAfter(10L, 2))
+                .thenReturn(Flux.just(new Customer(11L, "a", "a@test.com", 20), new Customer(12L, "b", "b@test.com", 21)));
+
+        //When
+        //Then
+        StepVerifier.create(customerService.getCustomersPage(10L, 2))
+                .expectNextMatches(page -> page.customers().size() == 2 && page.nextCursor() == 12L)
+                .verifyComplete();
+    }
+
+    @Test
+    void getCustomerNoCustomerFound() {
+        //Given
+        Mockito.when(customerDAO.selectCustomerById(1L)).thenReturn(Mono.empty());
+
+        //When
+        //Then
+        StepVerifier.create(customerService.getCustomer(1L))
+                .expectErrorMatches(e -> e instanceof ResourceNotFoundException
+                        && e.getMessage().equals("Customer id: 1 not found"))
+                .verify();
+    }
+
+    @Test
+    void addCustomerAlreadyExists() {
+        //Given
+        Mockito.when(customerDAO.insertCustomerIfAbsent(Mockito.any())).thenReturn(Mono.empty());
+
+        //When
+        //Then
+        StepVerifier.create(customerService.addCustomer(new CustomerRegistrationRequest("alex", "alex@test.com", 30)))
+                .expectError(DuplicateResourceException.class)
+                .verify();
+    }
+
+    @Test
+    void addCustomers() {
+        //Given
+        Mockito.when(customerDAO.insertCustomers(Mockito.anyList()))
+                .thenReturn(Mono.just(List.of(Optional.of(7L), Optional.empty())));
+
+        //When
+        //Then
+        StepVerifier.create(customerService.addCustomers(List.of(
+                        new CustomerRegistrationRequest("alex", "alex@test.com", 30),
+                        new CustomerRegistrationRequest("sam", "sam@test.com", 31))))
+                .expectNext(List.of(
+                        new CustomerRegistrationResult("alex@test.com", 7L, CustomerRegistrationResult.Status.CREATED),
+                        new CustomerRegistrationResult("sam@test.com", null, CustomerRegistrationResult.Status.DUPLICATE)))
+                .verifyComplete();
+    }
+
+    @Test
+    void addCustomersRejectsOversizedBatch() {
+        //Given
+        List<CustomerRegistrationRequest> requests = Collections.nCopies(CustomerService.MAX_BATCH_SIZE + 1,
+                new CustomerRegistrationRequest("alex", "alex@test.com", 30));
+
+        //When
+        //Then
+        StepVerifier.create(customerService.addCustomers(requests))
+                .expectError(RequestValidationException.class)
+                .verify();
+        Mockito.verifyNoInteractions(customerDAO);
+    }
+
+    @Test
+    void getCustomersKeepsRequestOrderAndReportsMissingIds() {
+        //Given
+        Mockito.when(customerDAO.selectCustomersByIds(List.of(3L, 1L, 2L)))
+                .thenReturn(Flux.just(new Customer(1L, "a", "a@test.com", 20), new Customer(3L, "c", "c@test.com", 22)));
+
+        //When
+        //Then
+        StepVerifier.create(customerService.getCustomers(List.of(3L, 1L, 3L, 2L)))
+                .expectNextMatches(result -> result.customers().stream().map(Customer::getId).toList().equals(List.of(3L, 1L))
+                        && result.missingIds().equals(List.of(2L)))
+                .verifyComplete();
+    }
+
+    @Test
+    void getCustomersRejectsOversizedLookup() {
+        //Given
+        List<Long> ids = Collections.nCopies(CustomerService.MAX_LOOKUP_SIZE + 1, 1L);
+
+        //When
+        //Then
+        StepVerifier.create(customerService.getCustomers(ids))
+                .expectError(RequestValidationException.class)
+                .verify();
+        Mockito.verifyNoInteractions(customerDAO);
+    }
+
+    @Test
+    void updateCustomerWithMissingFieldIsRejected() {
+        //Given
+        CustomerRegistrationRequest ageless = new CustomerRegistrationRequest("alex", "alex@test.com", null);
+
+        //When
+        //Then
+        StepVerifier.create(customerService.updateCustomer(1L, ageless))
+                .expectError(RequestValidationException.class)
+                .verify();
+        Mockito.verify(customerDAO, Mockito.never()).updateCustomerIfChanged(Mockito.any());
+    }
+
+    @Test
+    void updateCustomerWhenNoChanges() {
+        //Given
+        Mockito.when(customerDAO.updateCustomerIfChanged(Mockito.any())).thenReturn(Mono.just(CustomerUpdateResult.UNCHANGED));
+
+        //When
+        //Then
+        StepVerifier.create(customerService.updateCustomer(1L, new CustomerRegistrationRequest("alex", "alex@test.com", 30)))
+                .expectErrorMessage("No changes found for customer id: 1")
+                .verify();
+    }
+
+    @Test
+    void updateCustomerWhenVersionIsStale() {
+        //Given
+        Mockito.when(customerDAO.updateCustomerIfChanged(Mockito.any())).thenReturn(Mono.just(CustomerUpdateResult.VERSION_CONFLICT));
+
+        //When
+        //Then
+        StepVerifier.create(customerService.updateCustomer(1L, new CustomerRegistrationRequest("alex", "alex@test.com", 30), 3L))
+                .expectError(PreconditionFailedException.class)
+                .verify();
+    }
+
+    @Test
+    void deleteCustomerWhenCustomerDoesNotExist() {
+        //Given
+        Mockito.when(customerDAO.deleteCustomerById(1L)).thenReturn(Mono.just(false));
+
+        //When
+        //Then
+        StepVerifier.create(customerService.deleteCustomer(1L))
+                .expectError(ResourceNotFoundException.class)
+                .verify();
+    }
+
+    @Test
+    void deleteCustomer() {
+        //Given
+        Mockito.when(customerDAO.deleteCustomerById(1L)).thenReturn(Mono.just(true));
+
+        //When
+        //Then
+        StepVerifier.create(customerService.deleteCustomer(1L))
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,258 @@
+package com.amigoscode.customer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+
+class ReplicaRoutingDataSourceTest {
+
+    @Mock
+    private DataSource primary;
+    @Mock
+    private DataSource replicaA;
+    @Mock
+    private DataSource replicaB;
+    @Mock
+    private Connection primaryConnection;
+    @Mock
+    private Connection connectionA;
+    @Mock
+    private Connection connectionB;
+    private AutoCloseable autoCloseable;
+    private AtomicLong nanoTime;
+    private ReplicaRoutingDataSource underTest;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        autoCloseable = MockitoAnnotations.openMocks(this);
+        Mockito.when(primary.getConnection()).thenReturn(primaryConnection);
+        Mockito.when(replicaA.getConnection()).thenReturn(connectionA);
+        Mockito.when(replicaB.getConnection()).thenReturn(connectionB);
+        nanoTime = new AtomicLong();
+        underTest = new ReplicaRoutingDataSource(primary, List.of(replicaA, replicaB), Duration.ofSeconds(2), nanoTime::get);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        autoCloseable.close();
+    }
+
+    @Test
+    void readOnlyTransactionsAreBalancedOverHealthyReplicas() throws SQLException {
+        //Given
+        reportPrimaryPosition(100);
+        reportReplayed(connectionA, 100);
+        reportReplayed(connectionB, 100);
+        underTest.checkHealth();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        //When
+        List<Connection> connections = List.of(underTest.getConnection(), underTest.getConnection(), underTest.getConnection());
+
+        //Then
+        assertThat(connections).containsExactly(connectionA, connectionB, connectionA);
+    }
+
+    @Test
+    void readWriteTransactionsUseThePrimary() throws SQLException {
+        //Given
+        reportPrimaryPosition(100);
+        reportReplayed(connectionA, 100);
+        reportReplayed(connectionB, 100);
+        underTest.checkHealth();
+
+        //When
+        Connection actual = underTest.getConnection();
+
+        //Then
+        assertThat(actual).isSameAs(primaryConnection);
+    }
+
+    @Test
+    void replicasAreNotUsedBeforeTheirFirstHealthCheck() throws SQLException {
+        //Given
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        //When
+        Connection actual = underTest.getConnection();
+
+        //Then
+        assertThat(actual).isSameAs(primaryConnection);
+    }
+
+    @Test
+    void laggingReplicaIsSkipped() throws SQLException {
+        //Given
+        reportPrimaryPosition(100);
+        reportReplayed(connectionA, 100);
+        reportReplayed(connectionB, 100);
+        underTest.checkHealth();
+        advanceClockSeconds(3);
+        reportPrimaryPosition(200);
+        reportReplayed(connectionA, 200);
+        reportReplayed(connectionB, 120);
+        underTest.checkHealth();
+        advanceClockSeconds(3);
+        reportReplayed(connectionB, 150);
+        underTest.checkHealth();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        //When
+        List<Connection> connections = List.of(underTest.getConnection(), underTest.getConnection());
+
+        //Then
+        assertThat(connections).containsExactly(connectionA, connectionA);
+    }
+
+    @Test
+    void unreachableReplicasFallBackToThePrimary() throws SQLException {
+        //Given
+        reportPrimaryPosition(100);
+        reportReplayed(connectionA, 100);
+        reportReplayed(connectionB, 100);
+        underTest.checkHealth();
+        Mockito.doThrow(new SQLException("Connection refused")).when(replicaA).getConnection();
+        Mockito.doThrow(new SQLException("Connection refused")).when(replicaB).getConnection();
+        Mockito.clearInvocations(replicaA, replicaB);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        //When
+        Connection first = underTest.getConnection();
+        Connection second = underTest.getConnection();
+
+        //Then
+        assertThat(first).isSameAs(primaryConnection);
+        assertThat(second).isSameAs(primaryConnection);
+        Mockito.verify(replicaA, Mockito.times(1)).getConnection();
+        Mockito.verify(replicaB, Mockito.times(1)).getConnection();
+    }
+
+    @Test
+    void connectionsWithCredentialsAreRoutedTheSameWay() throws SQLException {
+        //Given
+        reportPrimaryPosition(100);
+        reportReplayed(connectionA, 100);
+        reportReplayed(connectionB, 100);
+        underTest.checkHealth();
+        Mockito.when(primary.getConnection("reporting", "secret")).thenReturn(primaryConnection);
+        Mockito.when(replicaA.getConnection("reporting", "secret")).thenReturn(connectionA);
+        Mockito.when(replicaB.getConnection("reporting", "secret")).thenReturn(connectionB);
+
+        //When
+        Connection readWrite = underTest.getConnection("reporting", "secret");
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        List<Connection> readOnly = List.of(underTest.getConnection("reporting", "secret"),
+                underTest.getConnection("reporting", "secret"));
+
+        //Then
+        assertThat(readWrite).isSameAs(primaryConnection);
+        assertThat(readOnly).containsExactly(connectionA, connectionB);
+    }
+
+    @Test
+    void replicaThatHasLostThePrimaryIsSkippedOnceThePrimaryMovesOn() throws SQLException {
+        //Given
+        reportPrimaryPosition(100);
+        reportReplayed(connectionA, 100);
+        reportReplayed(connectionB, 100);
+        underTest.checkHealth();
+        // B's WAL receiver is gone: it has replayed all it received, so it has no lag of its own to report
+        advanceClockSeconds(1);
+        reportPrimaryPosition(200);
+        reportReplayed(connectionA, 200);
+        underTest.checkHealth();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        List<Connection> whileRecent = List.of(underTest.getConnection(), underTest.getConnection());
+
+        //When
+        advanceClockSeconds(2);
+        underTest.checkHealth();
+        List<Connection> afterMaxLag = List.of(underTest.getConnection(), underTest.getConnection());
+
+        //Then
+        assertThat(whileRecent).containsExactlyInAnyOrder(connectionA, connectionB);
+        assertThat(afterMaxLag).containsExactly(connectionA, connectionA);
+    }
+
+    @Test
+    void serverNotInRecoveryIsNotUsedAsReplica() throws SQLException {
+        //Given
+        reportPrimaryPosition(100);
+        reportReplayed(connectionA, 100);
+        reportNotInRecovery(connectionB, 300);
+        underTest.checkHealth();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        //When
+        List<Connection> connections = List.of(underTest.getConnection(), underTest.getConnection());
+
+        //Then
+        assertThat(connections).containsExactly(connectionA, connectionA);
+    }
+
+    @Test
+    void replicasAreNotUsedWhileThePrimaryPositionIsUnknown() throws SQLException {
+        //Given
+        reportPrimaryPosition(100);
+        reportReplayed(connectionA, 100);
+        reportReplayed(connectionB, 100);
+        underTest.checkHealth();
+        Mockito.when(primaryConnection.createStatement()).thenThrow(new SQLException("Connection reset"));
+        underTest.checkHealth();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        //When
+        Connection actual = underTest.getConnection();
+
+        //Then
+        assertThat(actual).isSameAs(primaryConnection);
+    }
+
+    private void advanceClockSeconds(long seconds) {
+        nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+
+    private void reportPrimaryPosition(long lsn) throws SQLException {
+        ResultSet rs = resultSet(primaryConnection);
+        Mockito.when(rs.getLong(1)).thenReturn(lsn);
+    }
+
+    private static void reportReplayed(Connection connection, long lsn) throws SQLException {
+        ResultSet rs = resultSet(connection);
+        Mockito.when(rs.getBoolean(1)).thenReturn(true);
+        Mockito.when(rs.getLong(2)).thenReturn(lsn);
+    }
+
+    private static void reportNotInRecovery(Connection connection, long lsn) throws SQLException {
+        ResultSet rs = resultSet(connection);
+        Mockito.when(rs.getBoolean(1)).thenReturn(false);
+        Mockito.when(rs.getLong(2)).thenReturn(lsn);
+    }
+
+    private static ResultSet resultSet(Connection connection) throws SQLException {
+        Statement statement = Mockito.mock(Statement.class);
+        ResultSet rs = Mockito.mock(ResultSet.class);
+        Mockito.when(connection.createStatement()).thenReturn(statement);
+        Mockito.when(statement.executeQuery(anyString())).thenReturn(rs);
+        Mockito.when(rs.next()).thenReturn(true);
+        return rs;
+    }
+}
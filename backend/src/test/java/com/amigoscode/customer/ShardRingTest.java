@@ -0,0 +1,63 @@
+package com.amigoscode.customer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class ShardRingTest {
+
+    @Test
+    void addingAShardOnlyMovesBucketsToIt() {
+        //Given
+        ShardRing before = new ShardRing(3);
+
+        //When
+        ShardRing after = new ShardRing(4);
+
+        //Then
+        long moved = 0;
+        for (long bucket = 0; bucket < ShardRing.BUCKETS; bucket++) {
+            if (after.shardOf(bucket) != before.shardOf(bucket)) {
+                assertThat(after.shardOf(bucket)).isEqualTo(3);
+                moved++;
+            }
+        }
+        assertThat(moved).isBetween(ShardRing.BUCKETS / 8L, ShardRing.BUCKETS / 2L);
+    }
+
+    @Test
+    void everyShardOwnsBuckets() {
+        for (int shards = 1; shards <= 8; shards++) {
+            //Given
+            ShardRing underTest = new ShardRing(shards);
+
+            //When
+            long owners = IntStream.range(0, ShardRing.BUCKETS).map(underTest::shardOf).distinct().count();
+
+            //Then
+            assertThat(owners).isEqualTo(shards);
+        }
+    }
+
+    @Test
+    void idAllocatedForAnEmailLocatesTheSameShard() {
+        //Given
+        ShardRing underTest = new ShardRing(5);
+        String email = UUID.randomUUID() + "@test.com";
+
+        //When
+        long id = 4051L * ShardRing.BUCKETS + ShardRing.bucketOf(email);
+
+        //Then
+        assertThat(underTest.shardOf(id)).isEqualTo(underTest.shardOfEmail(email));
+    }
+
+    @Test
+    void atLeastOneShardIsRequired() {
+        assertThatIllegalArgumentException().isThrownBy(() -> new ShardRing(0));
+    }
+}
@@ -0,0 +1,236 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.DuplicateResourceException;
+import com.amigoscode.main;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+// three shards, the first of which is also the main database
+class ShardedCustomerDAOTest {
+
+    private static final List<PostgreSQLContainer<?>> shards = List.of(shard(), shard(), shard());
+
+    private ConfigurableApplicationContext context;
+
+    @BeforeAll
+    static void beforeAll() {
+        shards.forEach(PostgreSQLContainer::start);
+    }
+
+    @AfterAll
+    static void afterAll() {
+        shards.forEach(PostgreSQLContainer::stop);
+    }
+
+    @BeforeEach
+    void setUp() {
+        context = new SpringApplicationBuilder(main.class).run(
+                "--spring.main.web-application-type=none",
+                "--spring.datasource.url=" + shards.get(0).getJdbcUrl(),
+                "--spring.datasource.username=" + shards.get(0).getUsername(),
+                "--spring.datasource.password=" + shards.get(0).getPassword(),
+                "--customer.sharding.urls=" + shards.stream()
+                        .map(PostgreSQLContainer::getJdbcUrl)
+                        .collect(Collectors.joining(",")),
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=warn");
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    void customersAreSpreadOverShardsAndFoundOnEveryPath() {
+        //Given
+        CustomerDAO underTest = context.getBean(ShardedCustomerDAO.class);
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            customers.add(new Customer("alex", UUID.randomUUID() + "@test.com", 30));
+        }
+
+        //When
+        List<Long> ids = underTest.insertCustomers(customers).stream().map(Optional::orElseThrow).toList();
+
+        //Then
+        for (PostgreSQLContainer<?> shard : shards) {
+            assertThat(jdbcTemplate(shard).queryForObject(
+                    "SELECT count(*) FROM customer WHERE id = ANY(?)", Long.class, (Object) ids.toArray(Long[]::new)))
+                    .isPositive();
+        }
+        for (int i = 0; i < customers.size(); i++) {
+            assertThat(underTest.selectCustomerById(ids.get(i))).map(Customer::getEmail).contains(customers.get(i).getEmail());
+            assertThat(underTest.selectCustomerByEmail(customers.get(i).getEmail())).map(Customer::getId).contains(ids.get(i));
+        }
+        assertThat(underTest.selectCustomersByIds(ids)).extracting(Customer::getId).containsExactlyInAnyOrderElementsOf(ids);
+        assertThat(underTest.selectAllCustomers()).extracting(Customer::getId).containsAll(ids);
+        List<Long> paged = new ArrayList<>();
+        for (List<Customer> page = underTest.selectCustomersAfter(0L, 7); !page.isEmpty();
+             page = underTest.selectCustomersAfter(page.get(page.size() - 1).getId(), 7)) {
+            page.forEach(customer -> paged.add(customer.getId()));
+        }
+        assertThat(paged).isSorted().doesNotHaveDuplicates().containsAll(ids);
+    }
+
+    @Test
+    void emailStaysUniqueAcrossShardsAfterItChanges() {
+        //Given
+        CustomerDAO underTest = context.getBean(ShardedCustomerDAO.class);
+        CustomerService customerService = context.getBean(CustomerService.class);
+        ShardRing ring = new ShardRing(shards.size());
+        String original = UUID.randomUUID() + "@test.com";
+        String changed;
+        do {
+            changed = UUID.randomUUID() + "@test.com";
+        } while (ring.shardOfEmail(changed) == ring.shardOfEmail(original));
+        Long id = customerService.addCustomer(new CustomerRegistrationRequest("alex", original, 30));
+        Long otherId = customerService.addCustomer(new CustomerRegistrationRequest("sam", UUID.randomUUID() + "@test.com", 40));
+
+        //When
+        customerService.updateCustomer(id, new CustomerRegistrationRequest("alex", changed, 30));
+
+        //Then
+        assertThat(underTest.selectCustomerByEmail(changed)).map(Customer::getId).contains(id);
+        assertThat(underTest.selectCustomerByEmail(original)).isEmpty();
+        String taken = changed;
+        assertThatExceptionOfType(DuplicateResourceException.class)
+                .isThrownBy(() -> customerService.addCustomer(new CustomerRegistrationRequest("kim", taken, 50)));
+        assertThatExceptionOfType(DuplicateKeyException.class)
+                .isThrownBy(() -> customerService.updateCustomer(otherId, new CustomerRegistrationRequest("sam", taken, 40)));
+        assertThat(customerService.addCustomer(new CustomerRegistrationRequest("kim", original, 50))).isNotEqualTo(id);
+    }
+
+    @Test
+    void concurrentChangesToOneEmailLeaveItWithOneCustomer() throws Exception {
+        //Given
+        CustomerDAO underTest = context.getBean(ShardedCustomerDAO.class);
+        List<Customer> customers = new ArrayList<>();
+        for (String name : List.of("alex", "sam")) {
+            Customer customer = new Customer(name, UUID.randomUUID() + "@test.com", 30);
+            customers.add(new Customer(underTest.insertCustomerIfAbsent(customer).orElseThrow(), name, customer.getEmail(), 30));
+        }
+        List<String> emails = new ArrayList<>();
+        List<List<Long>> winners = new ArrayList<>();
+
+        //When
+        for (int round = 0; round < 20; round++) {
+            String email = UUID.randomUUID() + "@test.com";
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Optional<Long>>> changes = new ArrayList<>();
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (Customer customer : customers) {
+                    changes.add(executor.submit(() -> {
+                        start.await();
+                        try {
+                            underTest.updateCustomer(new Customer(customer.getId(), customer.getName(), email, 30));
+                            return Optional.of(customer.getId());
+                        } catch (DuplicateKeyException e) {
+                            return Optional.<Long>empty();
+                        }
+                    }));
+                }
+                start.countDown();
+            }
+            List<Long> roundWinners = new ArrayList<>();
+            for (Future<Optional<Long>> change : changes) {
+                change.get().ifPresent(roundWinners::add);
+            }
+            emails.add(email);
+            winners.add(roundWinners);
+        }
+
+        //Then
+        for (int round = 0; round < emails.size(); round++) {
+            String email = emails.get(round);
+            List<Long> holders = new ArrayList<>();
+            for (PostgreSQLContainer<?> shard : shards) {
+                holders.addAll(jdbcTemplate(shard).queryForList("SELECT id FROM customer WHERE email = ?", Long.class, email));
+            }
+            assertThat(winners.get(round)).hasSize(1);
+            assertThat(holders).hasSizeLessThanOrEqualTo(1);
+            assertThat(underTest.selectCustomerByEmail(email).map(Customer::getId)).isEqualTo(holders.stream().findFirst());
+        }
+        assertThat(underTest.selectCustomerByEmail(emails.get(emails.size() - 1)))
+                .map(Customer::getId)
+                .isEqualTo(winners.get(winners.size() - 1).stream().findFirst());
+    }
+
+    @Test
+    void startupIsRefusedOnceTheShardsHaveChanged() {
+        //Given
+        List<PostgreSQLContainer<?>> reordered = List.of(shards.get(1), shards.get(0), shards.get(2));
+
+        //When
+        //Then
+        assertThatExceptionOfType(BeanCreationException.class)
+                .isThrownBy(() -> new SpringApplicationBuilder(main.class).run(
+                        "--spring.main.web-application-type=none",
+                        "--spring.datasource.url=" + shards.get(0).getJdbcUrl(),
+                        "--spring.datasource.username=" + shards.get(0).getUsername(),
+                        "--spring.datasource.password=" + shards.get(0).getPassword(),
+                        "--customer.sharding.urls=" + reordered.stream()
+                                .map(PostgreSQLContainer::getJdbcUrl)
+                                .collect(Collectors.joining(",")),
+                        "--logging.level.root=off"))
+                .withRootCauseInstanceOf(IllegalStateException.class)
+                .withStackTraceContaining("was set up as shard 2 of 3");
+    }
+
+    @Test
+    void deletedCustomersEmailCanBeRegisteredAgain() {
+        //Given
+        CustomerDAO underTest = context.getBean(ShardedCustomerDAO.class);
+        String email = UUID.randomUUID() + "@test.com";
+        Long id = underTest.insertCustomerIfAbsent(new Customer("alex", email, 30)).orElseThrow();
+        assertThat(underTest.insertCustomerIfAbsent(new Customer("sam", email, 40))).isEmpty();
+
+        //When
+        boolean deleted = underTest.deleteCustomerById(id);
+
+        //Then
+        assertThat(deleted).isTrue();
+        assertThat(underTest.selectCustomerById(id)).isEmpty();
+        assertThat(underTest.insertCustomerIfAbsent(new Customer("sam", email, 40))).isPresent();
+    }
+
+    private static PostgreSQLContainer<?> shard() {
+        return new PostgreSQLContainer<>("postgres:latest")
+                .withDatabaseName("amigoscode-shard-test")
+                .withUsername("amigoscode")
+                .withPassword("password");
+    }
+
+    private static JdbcTemplate jdbcTemplate(PostgreSQLContainer<?> shard) {
+        return new JdbcTemplate(DataSourceBuilder.create()
+                .type(SimpleDriverDataSource.class)
+                .url(shard.getJdbcUrl())
+                .username(shard.getUsername())
+                .password(shard.getPassword())
+                .build());
+    }
+}
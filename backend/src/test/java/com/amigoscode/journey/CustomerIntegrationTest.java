@@ -1,16 +1,20 @@
 package com.amigoscode.journey;
 
 import com.amigoscode.customer.Customer;
+import com.amigoscode.customer.CustomerLookupResult;
 import com.amigoscode.customer.CustomerRegistrationRequest;
 import com.github.javafaker.Faker;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.OptionalLong;
 import java.util.UUID;
@@ -222,4 +226,163 @@ public class CustomerIntegrationTest {
                 .isEqualTo(new Customer(id.getAsLong(),"new", email, age));
 
     }
+
+    @Test
+    void getCustomerRevalidatesWithETag() {
+        Faker faker = new Faker();
+        String email = UUID.randomUUID() + faker.internet().emailAddress();
+        int age = faker.number().numberBetween(1, 100);
+        Long id = webTestClient.post()
+                .uri("/api/v1/customers")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerRegistrationRequest("etag", email, age)), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(Long.class)
+                .returnResult()
+                .getResponseBody();
+
+        //first get returns the customer with its version as ETag
+        String etag = webTestClient.get()
+                .uri("/api/v1/customers/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(Customer.class)
+                .getResponseHeaders()
+                .getETag();
+        assertThat(etag).isNotNull();
+
+        //revalidating an unchanged customer returns 304 without a body
+        webTestClient.get()
+                .uri("/api/v1/customers/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .ifNoneMatch(etag)
+                .exchange()
+                .expectStatus()
+                .isNotModified()
+                .expectBody()
+                .isEmpty();
+
+        //an update changes the ETag
+        webTestClient.put()
+                .uri("/api/v1/customers/{id}", id)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerRegistrationRequest("new", email, age)), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        webTestClient.get()
+                .uri("/api/v1/customers/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .ifNoneMatch(etag)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .value("ETag", newEtag -> assertThat(newEtag).isNotEqualTo(etag))
+                .expectBody(Customer.class)
+                .isEqualTo(new Customer(id, "new", email, age));
+    }
+
+    @Test
+    void updateCustomerWithStaleIfMatchIsRejected() {
+        Faker faker = new Faker();
+        String email = UUID.randomUUID() + faker.internet().emailAddress();
+        int age = faker.number().numberBetween(1, 100);
+        Long id = webTestClient.post()
+                .uri("/api/v1/customers")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerRegistrationRequest("if-match", email, age)), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(Long.class)
+                .returnResult()
+                .getResponseBody();
+        String etag = webTestClient.get()
+                .uri("/api/v1/customers/{id}", id)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(Customer.class)
+                .getResponseHeaders()
+                .getETag();
+
+        //the first writer holding the current ETag wins
+        webTestClient.put()
+                .uri("/api/v1/customers/{id}", id)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_MATCH, etag)
+                .body(Mono.just(new CustomerRegistrationRequest("first", email, age)), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        //a second writer with the same ETag would overwrite it and is rejected
+        webTestClient.put()
+                .uri("/api/v1/customers/{id}", id)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_MATCH, etag)
+                .body(Mono.just(new CustomerRegistrationRequest("second", email, age)), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+        webTestClient.get()
+                .uri("/api/v1/customers/{id}", id)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(Customer.class)
+                .isEqualTo(new Customer(id, "first", email, age));
+    }
+
+    @Test
+    void canLookUpManyCustomersAtOnce() {
+        Faker faker = new Faker();
+        List<Customer> registered = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            String email = UUID.randomUUID() + faker.internet().emailAddress();
+            int age = faker.number().numberBetween(1, 100);
+            Long id = webTestClient.post()
+                    .uri("/api/v1/customers")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(Mono.just(new CustomerRegistrationRequest("lookup", email, age)), CustomerRegistrationRequest.class)
+                    .exchange()
+                    .expectStatus()
+                    .isOk()
+                    .expectBody(Long.class)
+                    .returnResult()
+                    .getResponseBody();
+            registered.add(new Customer(id, "lookup", email, age));
+        }
+        Long missingId = -1L;
+        List<Long> ids = List.of(registered.get(2).getId(), missingId, registered.get(0).getId(), registered.get(1).getId());
+        CustomerLookupResult expected = new CustomerLookupResult(
+                List.of(registered.get(2), registered.get(0), registered.get(1)), List.of(missingId));
+
+        //customers come back in the order asked for, with the ids that do not exist listed apart
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path("/api/v1/customers").queryParam("ids", ids.toArray()).build())
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(CustomerLookupResult.class)
+                .isEqualTo(expected);
+
+        webTestClient.post()
+                .uri("/api/v1/customers/lookup")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(ids), List.class)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(CustomerLookupResult.class)
+                .isEqualTo(expected);
+    }
 }
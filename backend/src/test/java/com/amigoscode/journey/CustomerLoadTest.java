@@ -0,0 +1,324 @@
+package com.amigoscode.journey;
+
+import com.amigoscode.customer.Customer;
+import com.amigoscode.customer.CustomerRegistrationRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.env.Environment;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Open-model load test for the customer endpoints. Requests are fired at a fixed arrival rate whether or not
+ * earlier ones have completed, and latency is measured from the scheduled send time, so a stalled server shows
+ * up as queueing delay instead of silently lowering the offered load.
+ * <p>
+ * Excluded from the default build, run it with {@code mvn -Ploadtest test}. Tuned through system properties:
+ * loadtest.rows (comma separated dataset sizes, default 10000,1000000,10000000), loadtest.rate (requests per
+ * second), loadtest.duration-seconds, loadtest.warmup-seconds, loadtest.mix (e.g. get:70,page:15,register:10,update:5),
+ * loadtest.base-url (defaults to the embedded server) and loadtest.report.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "spring.jpa.show-sql=false")
+public class CustomerLoadTest {
+
+    private static final String SEEDED_EMAILS = "load-%@loadtest.com";
+    private static final int SEED_CHUNK = 1_000_000;
+    private static final int SAMPLE_SIZE = 100_000;
+    private static final double[] PERCENTILES = {50, 95, 99, 99.9};
+
+    @LocalServerPort
+    private int port;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private Environment environment;
+
+    private final AtomicLong updates = new AtomicLong();
+
+    @Test
+    void customerEndpointsUnderLoad() throws IOException {
+        List<Integer> datasetSizes = Arrays.stream(System.getProperty("loadtest.rows", "10000,1000000,10000000").split(","))
+                .map(String::trim)
+                .map(Integer::parseInt)
+                .toList();
+        int rate = Integer.getInteger("loadtest.rate", 200);
+        Duration duration = Duration.ofSeconds(Integer.getInteger("loadtest.duration-seconds", 60));
+        Duration warmup = Duration.ofSeconds(Integer.getInteger("loadtest.warmup-seconds", 10));
+        Duration timeout = Duration.ofSeconds(Integer.getInteger("loadtest.timeout-seconds", 10));
+        Map<Operation, Integer> mix = parseMix(System.getProperty("loadtest.mix", "get:70,page:15,register:10,update:5"));
+        String baseUrl = System.getProperty("loadtest.base-url", "http://localhost:" + port);
+        File report = new File(System.getProperty("loadtest.report", "target/loadtest/customer-load-test.json"));
+
+        ConnectionProvider connections = ConnectionProvider.builder("customer-load-test")
+                .maxConnections(Integer.getInteger("loadtest.connections", 500))
+                .pendingAcquireMaxCount(-1)
+                .pendingAcquireTimeout(timeout)
+                .build();
+        WebClient client = WebClient.builder()
+                .baseUrl(baseUrl)
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connections)))
+                .build();
+
+        List<DatasetResult> runs = new ArrayList<>();
+        try {
+            for (int rows : datasetSizes) {
+                seed(rows);
+                List<Customer> sample = sampleCustomers();
+                long tableRows = jdbcTemplate.queryForObject("SELECT count(*) FROM customer", Long.class);
+                run(client, mix, sample, rate, warmup, timeout);
+                Map<Operation, Recorder> recorders = run(client, mix, sample, rate, duration, timeout);
+                runs.add(new DatasetResult(rows, tableRows, recorders.values().stream()
+                        .map(recorder -> recorder.result(duration))
+                        .toList()));
+            }
+        } finally {
+            connections.dispose();
+        }
+
+        report.getParentFile().mkdirs();
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(report, new LoadTestReport(
+                Instant.now(), baseUrl, environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false),
+                rate, duration.toSeconds(), mix, runs));
+        System.out.println("CustomerLoadTest report written to " + report.getAbsolutePath());
+
+        assertThat(runs).allSatisfy(run -> assertThat(run.endpoints())
+                .extracting(EndpointResult::requests)
+                .allMatch(requests -> requests > 0));
+    }
+
+    private Map<Operation, Recorder> run(WebClient client,
+                                         Map<Operation, Integer> mix,
+                                         List<Customer> sample,
+                                         int rate,
+                                         Duration duration,
+                                         Duration timeout) {
+        Map<Operation, Recorder> recorders = new LinkedHashMap<>();
+        mix.keySet().forEach(operation -> recorders.put(operation, new Recorder(operation)));
+        int totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+        AtomicInteger inFlight = new AtomicInteger();
+
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long durationNanos = duration.toNanos();
+        long start = System.nanoTime();
+        for (long i = 0; i * intervalNanos < durationNanos; i++) {
+            long scheduled = start + i * intervalNanos;
+            long delay = scheduled - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+            }
+            Recorder recorder = recorders.get(pick(mix, totalWeight));
+            inFlight.incrementAndGet();
+            send(client, recorder.operation, sample)
+                    .timeout(timeout)
+                    .subscribe(
+                            response -> recorder.record(scheduled, !response.getStatusCode().isError()),
+                            error -> {
+                                recorder.record(scheduled, false);
+                                inFlight.decrementAndGet();
+                            },
+                            inFlight::decrementAndGet);
+        }
+
+        long drainDeadline = System.nanoTime() + timeout.toNanos() * 2;
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        return recorders;
+    }
+
+    private Mono<ResponseEntity<Void>> send(WebClient client, Operation operation, List<Customer> sample) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Customer customer = sample.get(random.nextInt(sample.size()));
+        return switch (operation) {
+            case GET -> client.get()
+                    .uri("/api/v1/customers/{id}", customer.getId())
+                    .accept(MediaType.APPLICATION_JSON)
+                    .exchangeToMono(ClientResponse::toBodilessEntity);
+            case PAGE -> client.get()
+                    .uri("/api/v1/customers?after={after}&limit={limit}", customer.getId(), 50)
+                    .accept(MediaType.APPLICATION_JSON)
+                    .exchangeToMono(ClientResponse::toBodilessEntity);
+            case LIST -> client.get()
+                    .uri("/api/v1/customers")
+                    .accept(MediaType.APPLICATION_JSON)
+                    .exchangeToMono(ClientResponse::toBodilessEntity);
+            case REGISTER -> client.post()
+                    .uri("/api/v1/customers")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(new CustomerRegistrationRequest("load register",
+                            "register-" + UUID.randomUUID() + "@loadtest.com", random.nextInt(18, 99)))
+                    .exchangeToMono(ClientResponse::toBodilessEntity);
+            case UPDATE -> client.put()
+                    .uri("/api/v1/customers/{id}", customer.getId())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(new CustomerRegistrationRequest("load update " + updates.incrementAndGet(),
+                            customer.getEmail(), random.nextInt(18, 99)))
+                    .exchangeToMono(ClientResponse::toBodilessEntity);
+        };
+    }
+
+    private void seed(int rows) {
+        long seeded = jdbcTemplate.queryForObject("SELECT count(*) FROM customer WHERE email LIKE ?", Long.class, SEEDED_EMAILS);
+        var sql = """
+                INSERT INTO customer(name, email, age)
+                SELECT 'load ' || i, 'load-' || i || '@loadtest.com', 18 + i % 80
+                FROM generate_series(?::bigint, ?::bigint) AS i
+                ON CONFLICT DO NOTHING
+                """;
+        for (long from = seeded + 1; from <= rows; from += SEED_CHUNK) {
+            jdbcTemplate.update(sql, from, Math.min(rows, from + SEED_CHUNK - 1));
+        }
+        jdbcTemplate.execute("ANALYZE customer");
+    }
+
+    private List<Customer> sampleCustomers() {
+        var sql = """
+                SELECT id, name, email, age
+                FROM customer
+                WHERE email LIKE ?
+                ORDER BY random()
+                LIMIT ?
+                """;
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new Customer(
+                rs.getLong("id"),
+                rs.getString("name"),
+                rs.getString("email"),
+                rs.getInt("age")
+        ), SEEDED_EMAILS, SAMPLE_SIZE);
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight > 0) {
+                weights.put(Operation.valueOf(parts[0].trim().toUpperCase()), weight);
+            }
+        }
+        return weights;
+    }
+
+    private static Operation pick(Map<Operation, Integer> mix, int totalWeight) {
+        int ticket = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            ticket -= entry.getValue();
+            if (ticket < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    enum Operation {
+        GET("GET /api/v1/customers/{id}"),
+        PAGE("GET /api/v1/customers?after&limit"),
+        LIST("GET /api/v1/customers"),
+        REGISTER("POST /api/v1/customers"),
+        UPDATE("PUT /api/v1/customers/{id}");
+
+        private final String endpoint;
+
+        Operation(String endpoint) {
+            this.endpoint = endpoint;
+        }
+    }
+
+    private static class Recorder {
+
+        private final Operation operation;
+        private long[] latencies = new long[1024];
+        private int count;
+        private long errors;
+
+        Recorder(Operation operation) {
+            this.operation = operation;
+        }
+
+        synchronized void record(long scheduledNanos, boolean success) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = System.nanoTime() - scheduledNanos;
+            if (!success) {
+                errors++;
+            }
+        }
+
+        synchronized EndpointResult result(Duration duration) {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            Map<String, Double> percentiles = new LinkedHashMap<>();
+            for (double percentile : PERCENTILES) {
+                percentiles.put("p" + String.valueOf(percentile).replace(".0", "").replace(".", ""),
+                        millis(sorted, percentile));
+            }
+            percentiles.put("max", count == 0 ? 0 : sorted[count - 1] / 1_000_000.0);
+            return new EndpointResult(
+                    operation.endpoint,
+                    count,
+                    errors,
+                    count == 0 ? 0 : (double) errors / count,
+                    (double) (count - errors) / duration.toSeconds(),
+                    percentiles);
+        }
+
+        private static double millis(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+            return sorted[Math.max(index, 0)] / 1_000_000.0;
+        }
+    }
+
+    record LoadTestReport(Instant finishedAt,
+                          String baseUrl,
+                          boolean virtualThreads,
+                          int ratePerSecond,
+                          long durationSeconds,
+                          Map<Operation, Integer> mix,
+                          List<DatasetResult> runs) {
+    }
+
+    record DatasetResult(int datasetRows, long tableRows, List<EndpointResult> endpoints) {
+    }
+
+    record EndpointResult(String endpoint,
+                          long requests,
+                          long errors,
+                          double errorRate,
+                          double throughputPerSecond,
+                          Map<String, Double> latencyMillis) {
+    }
+}
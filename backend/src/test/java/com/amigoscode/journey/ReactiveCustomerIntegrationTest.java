@@ -0,0 +1,9 @@
+package com.amigoscode.journey;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+// Runs the servlet journey against the WebFlux + R2DBC stack
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.main.web-application-type=reactive")
+public class ReactiveCustomerIntegrationTest extends CustomerIntegrationTest {
+}